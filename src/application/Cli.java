@@ -1,5 +1,19 @@
 package application;
 
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.Options;
@@ -9,16 +23,61 @@ import org.apache.commons.cli.PosixParser;
 import org.apache.commons.logging.LogFactory;
 
 
+/**
+ * Runs one algorithm from the command line, or with --sweep a list of
+ * parameter sets over the same data.
+ *
+ * A sweep file holds one parameter set per line, as KEY=value pairs
+ * separated by spaces, overriding defaults.ini.  A value may be a comma
+ * separated list, and a line then stands for every combination of its
+ * values, so one line is a grid and several lines are a list.  Lines
+ * starting with ! or # are comments.  For example
+ *
+ *   GNG_NODE_INSERTION=50,100,200 GNG_EDGE_DELETION=40,80
+ *   ALGORITHM=NG NG_NODES=50,100
+ *
+ * The data file is read once, and shared read only by every run, so FILE,
+ * DIMENSIONALITY, LABELLED and NORMALISED cannot be swept, nor CL-DEMO,
+ * which marks the inputs.  The runs go on
+ * a pool of --workers threads, one per processor by default, and a row is
+ * printed for each, in the order of the file: the final SSE, the topology
+ * measure, the wall time and the iterations per second.
+ *
+ * Runs on a shared pool compete for the processors, so their times only
+ * compare when they go one at a time.  A sweep with a run that trains on
+ * several threads itself, CL with CL_WORKERS above 1 or a batch
+ * algorithm, goes one run at a time unless --workers says otherwise.  So
+ *
+ *   ALGORITHM=CL CL_WORKERS=1,1,2,4,8
+ *
+ * times the Hogwild workers against the one worker baseline, and sets the
+ * SSE of each against that of one worker.  The first run also warms up the
+ * JIT, hence the baseline twice.
+ *
+ * Usage: Cli [-d dimension] [-l] [-s sweep file [-w workers]] data file algorithm
+ */
 public class Cli extends Common {
 	
+	/** Parameters read with the data, which a sweep cannot vary */
+	private static final String[] DATA_KEYS = {"FILE", "DIMENSIONALITY", "LABELLED", "NORMALISED"};
+	
+	/** The sweep file, null for a single run */
+	private String sweepFile = null;
+	
+	/** Sweep threads, 0 for one per processor */
+	private int workers = 0;
+	
 	/**
 	 * @param args
 	 */
 	public static void main(String[] args) {
-		// TODO Auto-generated method stub
 		Cli cli = new Cli();
 		cli.initialize(args);
-		cli.algorithm.run();
+		if (cli.sweepFile != null) {
+			cli.sweep();
+		} else {
+			cli.algorithm.run();
+		}
 	}
     
     private void initialize(String[] args) {
@@ -32,9 +91,18 @@ public class Cli extends Common {
         parseCommandLine(args);
         
         this.loadDataFile();
-        this.prepareAlgorithm();
+        if (sweepFile == null) {
+        	this.prepareAlgorithm();
+        }
     }
 	
+	/**
+	 * Headless runs go flat out
+	 */
+	protected String defaultPacing() {
+		return "UNTHROTTLED";
+	}
+	
 	public void parseCommandLine(String[] args) {
 
         // create the command line parser
@@ -44,6 +112,8 @@ public class Cli extends Common {
         Options options = new Options();
         options.addOption( "d", "dimension", true, "data dimension" );
         options.addOption( "l", "labelled", false, "for labelled data" );
+        options.addOption( "s", "sweep", true, "file of parameter sets to run" );
+        options.addOption( "w", "workers", true, "threads for a sweep, one per processor by default" );
 
         try {
             // parse the command line arguments
@@ -63,6 +133,12 @@ public class Cli extends Common {
             	properties.setProperty( "LABELLED", line.getOptionValue( "labelled" ));
             	log.debug(properties.getProperty( "LABELLED" ));
             }
+            if( line.hasOption( "sweep" ) ) {
+            	sweepFile = line.getOptionValue( "sweep" );
+            }
+            if( line.hasOption( "workers" ) ) {
+            	workers = Integer.parseInt(line.getOptionValue( "workers" ));
+            }
             
             //TODO : usage function
         }
@@ -70,6 +146,172 @@ public class Cli extends Common {
         	log.debug("Unexpected exception:" + e.getMessage(), e);
         }
     }
+	
+	/**
+	 * Run every parameter set of the sweep file on a pool of threads, and
+	 * print a row for each
+	 */
+	private void sweep() {
+		final List<Properties> runs = readSweep(sweepFile);
+		for (int i = 0; i < runs.size(); i++) {
+			// the demo marks the inputs it visits, which the runs share
+			if ("CL-DEMO".equals(runs.get(i).getProperty("ALGORITHM", properties.getProperty("ALGORITHM")))) {
+				System.err.print("Cli: CL-DEMO changes the inputs, so it cannot be swept\n");
+				throw new IllegalArgumentException("Cannot sweep CL-DEMO");
+			}
+		}
+		boolean parallel = false;
+		for (int i = 0; i < runs.size(); i++) {
+			parallel |= isParallel(runs.get(i));
+		}
+		final int threads;
+		if (workers > 0) {
+			threads = workers;
+		} else {
+			// runs with threads of their own are timed one at a time
+			threads = parallel ? 1 : Runtime.getRuntime().availableProcessors();
+		}
+		log.info(runs.size() + " runs on " + threads + " threads");
+		if (threads > 1 && runs.size() > 1) {
+			log.warn("The runs share the processors, so their ms and iterations/s are not those of a run alone"
+					+ (parallel ? ", nor the scaling of their threads" : "") + "; use -w 1 to time them");
+		}
+		final ExecutorService pool = Executors.newFixedThreadPool(threads);
+		final List<Future<String>> rows = new ArrayList<Future<String>>();
+		try {
+			for (int i = 0; i < runs.size(); i++) {
+				final int number = i + 1;
+				final Properties parameters = runs.get(i);
+				rows.add(pool.submit(new Callable<String>() {
+					public String call() {
+						return runOne(number, parameters);
+					}
+				}));
+			}
+			System.out.println("run\tparameters\tsse\ttopology\tms\titerations/s");
+			for (int i = 0; i < rows.size(); i++) {
+				try {
+					System.out.println(rows.get(i).get());
+				}
+				catch (ExecutionException e) {
+					log.error("Run " + (i + 1) + " " + describe(runs.get(i)) + " failed", e.getCause());
+					System.out.println((i + 1) + "\t" + describe(runs.get(i)) + "\tfailed\t\t\t");
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+	
+	// Does a parameter set train on several threads of its own
+	private boolean isParallel(Properties parameters) {
+		final String model = parameters.getProperty("ALGORITHM", properties.getProperty("ALGORITHM"));
+		if ("CL".equals(model)) {
+			return Integer.parseInt(parameters.getProperty("CL_WORKERS", properties.getProperty("CL_WORKERS", "0"))) > 1;
+		}
+		return model != null && model.startsWith("BATCH-");
+	}
+	
+	// Train one parameter set over the shared data, and describe the result
+	private String runOne(int number, Properties parameters) {
+		final Cli run = new Cli();
+		run.log = log;
+		run.properties.putAll(properties);
+		// one progress log per run would be noise, unless asked for
+		run.properties.setProperty("PROGRESS_INTERVAL", "0");
+		run.properties.putAll(parameters);
+		run.inputData = inputData;
+		run.prepareAlgorithm();
+		final long started = System.nanoTime();
+		run.algorithm.run();
+		final long elapsed = System.nanoTime() - started;
+		final int iterations = run.algorithm.getIteration().getCounter() - 1;
+		final double sse = run.algorithm.getSSE();
+		final double topology = run.algorithm.getTopologyMeasure();
+		return number + "\t" + describe(parameters) + "\t" + sse + "\t" + topology + "\t" +
+				(elapsed / 1000000L) + "\t" + Math.round(iterations * 1.0e9d / Math.max(elapsed, 1L));
+	}
+	
+	// The parameter sets of a sweep file, every combination of each line
+	private static List<Properties> readSweep(String file) {
+		final List<Properties> runs = new ArrayList<Properties>();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(file));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("!") || line.startsWith("#")) {
+					continue;
+				}
+				final String[] pairs = line.split("\\s+");
+				final String[] keys = new String[pairs.length];
+				final String[][] values = new String[pairs.length][];
+				for (int i = 0; i < pairs.length; i++) {
+					final int equals = pairs[i].indexOf('=');
+					if (equals <= 0) {
+						System.err.print("Cli: " + pairs[i] + " is not KEY=value in " + file + "\n");
+						throw new IllegalArgumentException("Bad sweep parameter " + pairs[i]);
+					}
+					keys[i] = pairs[i].substring(0, equals);
+					values[i] = pairs[i].substring(equals + 1).split(",");
+					for (int k = 0; k < DATA_KEYS.length; k++) {
+						if (keys[i].equals(DATA_KEYS[k])) {
+							System.err.print("Cli: the data is read once, so " + keys[i] + " cannot be swept\n");
+							throw new IllegalArgumentException("Cannot sweep " + keys[i]);
+						}
+					}
+				}
+				combine(keys, values, 0, new Properties(), runs);
+			}
+		}
+		catch (IOException e) {
+			System.err.print("Cli: unable to read the sweep file " + file + "\n");
+			throw new RuntimeException("Unable to read " + file, e);
+		}
+		finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+		return runs;
+	}
+	
+	// Add a parameter set for every combination of the values from key on,
+	// the last key changing fastest
+	private static void combine(String[] keys, String[][] values, int key, Properties set, List<Properties> runs) {
+		if (key == keys.length) {
+			runs.add(set);
+			return;
+		}
+		for (int v = 0; v < values[key].length; v++) {
+			final Properties next = new Properties();
+			next.putAll(set);
+			next.setProperty(keys[key], values[key][v]);
+			combine(keys, values, key + 1, next, runs);
+		}
+	}
+	
+	// The parameters of a set as KEY=value pairs, by key
+	private static String describe(Properties parameters) {
+		final StringBuilder text = new StringBuilder();
+		for (Iterator<Object> i = new TreeSet<Object>(parameters.keySet()).iterator(); i.hasNext(); ) {
+			final Object key = i.next();
+			text.append(key).append('=').append(parameters.get(key));
+			if (i.hasNext()) {
+				text.append(' ');
+			}
+		}
+		return text.toString();
+	}
 
 
 
@@ -14,12 +14,15 @@ import structures.Vertex;
 import support.DataFileReader;
 
 import networks.Algorithm;
+import networks.AlgorithmBatchNeuralGas;
+import networks.AlgorithmBatchSOM;
 import networks.AlgorithmCompetitiveLearning;
 import networks.AlgorithmCompetitiveLearningDemo;
 import networks.AlgorithmGrowingCellStructures;
 import networks.AlgorithmGrowingNeuralGas;
 import networks.AlgorithmNeuralGas;
 import networks.AlgorithmSOM;
+import networks.Pacing;
 
 /**
  * <p>Title: Competitive Learning</p>
@@ -28,6 +31,10 @@ import networks.AlgorithmSOM;
  * <p>Company: University Paris 1</p>
  * @author Fabrice Jammes (fabrice.jammes@gmail.com)
  * @version 1.0 First submission
+ * @version 1.1 PACING and PROGRESS_INTERVAL, with a pacing default for each launcher
+ * @version 1.2 BATCH-NG and BATCH_THREADS
+ * @version 1.3 BATCH-SOM
+ * @version 1.4 CL_WORKERS
  */
 public abstract class Common {
 	
@@ -56,6 +63,12 @@ public abstract class Common {
       };
     }
     
+    // the pacing PACING = DEFAULT stands for, FRAME to leave
+    // time for a user interface to draw
+    protected String defaultPacing() {
+      return "FRAME";
+    }
+    
     protected void loadDataFile() {
     
     boolean normalised = new Boolean(properties.getProperty("NORMALISED")).booleanValue();
@@ -78,7 +91,7 @@ public abstract class Common {
     String model = (String) properties.getProperty("ALGORITHM");
     // GROWING NEURAL GAS
     if (model.equals("GNG")) {
-        algorithm = new AlgorithmGrowingNeuralGas(inputData,
+        AlgorithmGrowingNeuralGas gng = new AlgorithmGrowingNeuralGas(inputData,
                                 new Integer((String)properties.getProperty("DIMENSIONALITY")).intValue(),
                                 new Integer((String)properties.getProperty("EPOCH")).intValue(),
                                 new Double((String)properties.getProperty("MINKOWSKI")).doubleValue(),
@@ -87,9 +100,11 @@ public abstract class Common {
                                 new Double((String)properties.getProperty("GNG_NEIGHBOUR_LEARNING_RATE")).doubleValue(),
                                 new Integer((String)properties.getProperty("GNG_NODE_INSERTION")).intValue(),
                                 new Integer((String)properties.getProperty("GNG_EDGE_DELETION")).intValue());
+        gng.setLocalPruning(Boolean.valueOf(properties.getProperty("GNG_LOCAL_PRUNING", "false")).booleanValue());
+        algorithm = gng;
     // Neural Gas
     } else if (model.equals("NG")) {
-        algorithm = new AlgorithmNeuralGas(inputData,
+        AlgorithmNeuralGas ng = new AlgorithmNeuralGas(inputData,
                                 new Integer((String)properties.getProperty("DIMENSIONALITY")).intValue(),
                                 new Integer((String)properties.getProperty("EPOCH")).intValue(),
                                 new Double((String)properties.getProperty("MINKOWSKI")).doubleValue(),
@@ -98,14 +113,30 @@ public abstract class Common {
                                 new Double((String)properties.getProperty("NG_NEIGHBOURHOOD_FINAL")).doubleValue(),
                                 new Double((String)properties.getProperty("NG_LEARNING_INITIAL")).doubleValue(),
                                 new Double((String)properties.getProperty("NG_LEARNING_FINAL")).doubleValue());
+        ng.setRankTolerance(Double.parseDouble(properties.getProperty("NG_RANK_TOLERANCE", "0")));
+        algorithm = ng;
+    // Batch Neural Gas, on the NG schedule
+    } else if (model.equals("BATCH-NG")) {
+        AlgorithmBatchNeuralGas bng = new AlgorithmBatchNeuralGas(inputData,
+                                new Integer((String)properties.getProperty("DIMENSIONALITY")).intValue(),
+                                new Integer((String)properties.getProperty("EPOCH")).intValue(),
+                                new Double((String)properties.getProperty("MINKOWSKI")).doubleValue(),
+                                new Integer((String)properties.getProperty("NG_NODES")).intValue(),
+                                new Double((String)properties.getProperty("NG_NEIGHBOURHOOD_INITIAL")).doubleValue(),
+                                new Double((String)properties.getProperty("NG_NEIGHBOURHOOD_FINAL")).doubleValue());
+        bng.setRankTolerance(Double.parseDouble(properties.getProperty("NG_RANK_TOLERANCE", "0")));
+        bng.setThreads(Integer.parseInt(properties.getProperty("BATCH_THREADS", "0")));
+        algorithm = bng;
     // Competitive Learning (WTA)
     } else if (model.equals("CL")) {
-        algorithm = new AlgorithmCompetitiveLearning(inputData,
+        AlgorithmCompetitiveLearning cl = new AlgorithmCompetitiveLearning(inputData,
                                 new Integer((String)properties.getProperty("DIMENSIONALITY")).intValue(),
                                 new Integer((String)properties.getProperty("EPOCH")).intValue(),
                                 new Double((String)properties.getProperty("MINKOWSKI")).doubleValue(),
                                 new Integer((String)properties.getProperty("CL_NODES")).intValue(),
                                 new Double((String)properties.getProperty("CL_LEARNING_RATE")).doubleValue());
+        cl.setWorkers(Integer.parseInt(properties.getProperty("CL_WORKERS", "0")));
+        algorithm = cl;
 
     } else if (model.equals("CL-DEMO")) {
               algorithm = new AlgorithmCompetitiveLearningDemo(inputData,
@@ -131,6 +162,18 @@ public abstract class Common {
                                 new Double((String)properties.getProperty("SOM_NEIGHBOURHOOD_FINAL")).doubleValue(),
                                 new Double((String)properties.getProperty("SOM_LEARNING_INITIAL")).doubleValue(),
                                 new Double((String)properties.getProperty("SOM_LEARNING_FINAL")).doubleValue());
+    // Batch Self-Organising Map, on the SOM grid and neighbourhood
+    } else if (model.equals("BATCH-SOM")) {
+        AlgorithmBatchSOM bsom = new AlgorithmBatchSOM(inputData,
+                                new Integer((String)properties.getProperty("DIMENSIONALITY")).intValue(),
+                                new Integer((String)properties.getProperty("EPOCH")).intValue(),
+                                new Double((String)properties.getProperty("MINKOWSKI")).doubleValue(),
+                                new Integer((String)properties.getProperty("SOM_ROWS")).intValue(),
+                                new Integer((String)properties.getProperty("SOM_COLUMNS")).intValue(),
+                                new Double((String)properties.getProperty("SOM_NEIGHBOURHOOD_INITIAL")).doubleValue(),
+                                new Double((String)properties.getProperty("SOM_NEIGHBOURHOOD_FINAL")).doubleValue());
+        bsom.setThreads(Integer.parseInt(properties.getProperty("BATCH_THREADS", "0")));
+        algorithm = bsom;
     // Growing Cell Structures
     } else if (model.equals("GCS")) {
         algorithm = new AlgorithmGrowingCellStructures(inputData,
@@ -145,5 +188,33 @@ public abstract class Common {
     } else {
         throw new RuntimeException("application.Launcher: Unsupported algorithm "+model);
     }
+    // DEBUG switches on the graph consistency checks
+    if (Boolean.valueOf(properties.getProperty("DEBUG")).booleanValue()) {
+        algorithm.getGraph().setDuplicateEdgeCheck(true);
+    }
+    // VECTORIZED trains with the Vector API kernels, where the JVM has them
+    algorithm.setVectorized(Boolean.valueOf(properties.getProperty("VECTORIZED", "false")).booleanValue());
+    // DIMENSION_ORDER sums the distances over the most varied dimensions first
+    algorithm.setDimensionOrder(Boolean.valueOf(properties.getProperty("DIMENSION_ORDER", "false")).booleanValue());
+    // PROTOTYPE_INDEX finds the winners through a kd-tree of the units
+    algorithm.setIndexed(Boolean.valueOf(properties.getProperty("PROTOTYPE_INDEX", "false")).booleanValue());
+    // GREEDY_SEARCH walks the network to the winners, checking some exactly
+    algorithm.setGreedySearch(Boolean.valueOf(properties.getProperty("GREEDY_SEARCH", "false")).booleanValue(),
+                              Integer.parseInt(properties.getProperty("GREEDY_VERIFY_INTERVAL", "100")));
+    // TRIANGLE_SEARCH skips the units the distances between units rule out
+    algorithm.setTriangleSearch(Boolean.valueOf(properties.getProperty("TRIANGLE_SEARCH", "false")).booleanValue());
+    // BMU_CACHE keeps the winners of each input, searching again only when the units may have passed them
+    algorithm.setBmuCache(Boolean.valueOf(properties.getProperty("BMU_CACHE", "false")).booleanValue());
+    // PACING sets how fast the algorithm iterates, DEFAULT as the launcher prefers
+    String pacing = properties.getProperty("PACING", "DEFAULT");
+    if (pacing.equalsIgnoreCase("DEFAULT")) {
+        pacing = defaultPacing();
+    }
+    algorithm.setPacing(Pacing.forName(pacing,
+                                       Integer.parseInt(properties.getProperty("PACING_DELAY", "10")),
+                                       Integer.parseInt(properties.getProperty("PACING_FRAME", "40")),
+                                       Integer.parseInt(properties.getProperty("PACING_FRAME_BUDGET", "20"))));
+    // PROGRESS_INTERVAL logs the progress every so many milliseconds, 0 never
+    algorithm.setProgressInterval(Long.parseLong(properties.getProperty("PROGRESS_INTERVAL", "0")));
     }
 }
@@ -0,0 +1,107 @@
+package application;
+
+import java.util.Random;
+
+import structures.DistanceKernel;
+import structures.Kernels;
+
+/**
+ * Times the scalar and vector training kernels, the squared Euclidean
+ * distance and the adaptation w += rate * (x - w), for a range of dimensions,
+ * and prints the time per call and the speed up of each.
+ *
+ * The vector kernels are only used when the JVM runs with
+ * --add-modules jdk.incubator.vector, as "ant run-benchmark" does, otherwise
+ * both columns time the scalar kernels.
+ *
+ * Usage: KernelBenchmark [dimension ...]
+ */
+public class KernelBenchmark {
+
+	/** Dimensions timed when none are given */
+	private static final int[] DIMENSIONS = {2, 3, 4, 8, 10, 16, 32, 50, 64, 128, 256};
+
+	/** Weight vectors per run, enough to leave the caches warm but not trivial */
+	private static final int VECTORS = 256;
+
+	/** Calls timed per kernel and dimension */
+	private static final int CALLS = 2000000;
+
+	/** Keeps the JIT from dropping the distance calls */
+	private static double sink = 0.0d;
+
+	public static void main(String[] args) {
+		int[] dimensions = DIMENSIONS;
+		if (args.length > 0) {
+			dimensions = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				dimensions[i] = Integer.parseInt(args[i]);
+			}
+		}
+
+		Kernels scalar = Kernels.scalar();
+		Kernels vector = Kernels.vectorized();
+		System.out.println("scalar: " + scalar + ", vector: " + vector);
+		System.out.println("dim\tdist scalar ns\tdist vector ns\tspeed up\tadapt scalar ns\tadapt vector ns\tspeed up");
+
+		for (int d : dimensions) {
+			double[][] w = random(d, 1L);
+			double[][] x = random(d, 2L);
+
+			// warm up both, so the JIT has compiled them before timing
+			distance(scalar.distance(2.0), w, x, CALLS / 4);
+			distance(vector.distance(2.0), w, x, CALLS / 4);
+			adapt(scalar, w, x, CALLS / 4);
+			adapt(vector, w, x, CALLS / 4);
+
+			double ds = distance(scalar.distance(2.0), w, x, CALLS);
+			double dv = distance(vector.distance(2.0), w, x, CALLS);
+			double as = adapt(scalar, w, x, CALLS);
+			double av = adapt(vector, w, x, CALLS);
+
+			System.out.println(d + "\t" + format(ds) + "\t" + format(dv) + "\t" + format(ds / dv)
+					+ "\t" + format(as) + "\t" + format(av) + "\t" + format(as / av));
+		}
+		if (sink == 42.0d) {
+			System.out.println();
+		}
+	}
+
+	// ns per distance call
+	private static double distance(DistanceKernel kernel, double[][] w, double[][] x, int calls) {
+		double d = 0.0d;
+		long start = System.nanoTime();
+		for (int c = 0; c < calls; c++) {
+			d += kernel.distance(w[c % VECTORS], x[c % VECTORS]);
+		}
+		long elapsed = System.nanoTime() - start;
+		sink += d;
+		return (double) elapsed / calls;
+	}
+
+	// ns per adaptation call, with a rate that leaves the weights bounded
+	private static double adapt(Kernels kernels, double[][] w, double[][] x, int calls) {
+		long start = System.nanoTime();
+		for (int c = 0; c < calls; c++) {
+			kernels.adapt(w[c % VECTORS], x[c % VECTORS], 0.01d);
+		}
+		long elapsed = System.nanoTime() - start;
+		sink += w[0][0];
+		return (double) elapsed / calls;
+	}
+
+	private static double[][] random(int dimension, long seed) {
+		Random random = new Random(seed);
+		double[][] vectors = new double[VECTORS][dimension];
+		for (int i = 0; i < VECTORS; i++) {
+			for (int j = 0; j < dimension; j++) {
+				vectors[i][j] = random.nextDouble();
+			}
+		}
+		return vectors;
+	}
+
+	private static String format(double value) {
+		return String.valueOf(Math.round(value * 100.0d) / 100.0d);
+	}
+}
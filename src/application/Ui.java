@@ -33,6 +33,9 @@ import ui.controller.UserInterfaceController;
  *    is called from the configurationframe
  *  - the algorithm thread start() is now in a private run() method
  * @version 1.2 Removed compiler > 1.5 container unchecked warnings
+ * @version 1.3 The network graph runs in concurrent read mode
+ * @version 1.4 Batch Neural Gas
+ * @version 1.5 Batch Self-Organising Map
  */
 public class Ui extends Common {
 
@@ -46,7 +49,9 @@ public class Ui extends Common {
        {"CL",      "Competitive Learning",        "ui.CL_panel"},
        {"CL-DEMO", "Competitive Learning Demo",   "ui.CL_panel"},
        {"SOM",     "Self-Organising Map",         "ui.SOM_panel"},
-       {"NG",      "Neural Gas",                  "ui.NG_panel"}
+       {"BATCH-SOM", "Batch Self-Organising Map", "ui.SOM_panel"},
+       {"NG",      "Neural Gas",                  "ui.NG_panel"},
+       {"BATCH-NG", "Batch Neural Gas",           "ui.NG_panel"}
     };
 
     private Hashtable<Object,Object> dropdown = new Hashtable<Object,Object>();
@@ -136,6 +141,8 @@ public class Ui extends Common {
       dataView = new DataView(this.algorithm.getInputs(),
                               new Integer((String)properties.get("DIMENSIONALITY")).intValue(),
                               properties);
+      // the display and the measures read the network from other threads
+      algorithm.getGraph().setConcurrentReads(true);
       graphController = new GraphController(algorithm,
                               dataView,
                               new Integer((String) properties.get("DISPLAY_UPDATE_RATE")).intValue(),
@@ -11,14 +11,30 @@ import org.apache.commons.logging.LogFactory;
 /**
  * <p>Title: Competitive Learning</p>
  * <p>Description: Provides an abstract stub for concrete algorithm classes.
- * The algorithms have a runnable state, and must provide an implementation of the run()
- * and getGraph() methods.  In addition, the run() method should make
- * a call to delay() to yield some cpu time.</p>
+ * The algorithms have a runnable state, and must provide an implementation of the
+ * iterate() and getGraph() methods.  run() paces the iterations with a Pacing
+ * policy, which yields cpu time to a user interface, and reports progress on
+ * a clock of its own.</p>
  * <p>Copyright: Copyright (c) 2005</p>
  * <p>Company: University of Hertfordshire</p>
  * @author Kevin Doherty (e-mail K.A.J.Doherty@herts.ac.uk)
  * @version 1.0 Initial Release
  * @version 1.1 Added static int for long and short delays for thread yield
+ * @version 1.2 getSSE(), the topology measure and the induced triangulation
+ * read the published snapshot of the network
+ * @version 1.3 Distances by a DistanceKernel chosen once per run
+ * @version 1.4 Distance and adaptation kernels, scalar or vectorized
+ * @version 1.5 Optional PrototypeIndex for the winner search
+ * @version 1.6 Optional GreedySearch over the network graph, reported at the end of a run
+ * @version 1.7 Optional BmuCache of the winners of each input, for training,
+ * getSSE() and the induced triangulation
+ * @version 1.8 Optional TriangleSearch for the CL winner and the SSE classification
+ * @version 1.9 Early abandoning winner searches, and optional dimension ordering by variance
+ * @version 2.0 A Pacing policy in place of the fixed delay after every iteration, and
+ * progress reports by time
+ * @version 2.1 finished(), called whenever run() returns
+ * @version 2.2 The graph is published to its concurrent readers on a pause
+ * and at the end of a run
  */
 abstract public class Algorithm implements Runnable {
     
@@ -30,6 +46,17 @@ abstract public class Algorithm implements Runnable {
     
     protected Dealer dealer; // Epoch handler
     protected Counter iteration; // Iteration counter
+    protected Kernels kernels = Kernels.scalar(); // The training inner loops
+    protected DistanceKernel kernel = DistanceKernel.SQUARED_L2; // The training distance
+    protected PrototypeIndex index = null; // kd-tree over the units, null to scan them all
+    protected GreedySearch greedy = null; // walk the network to the winners, null to search exactly
+    protected PrototypeDrift drift = null; // how far the units have moved, null if not tracked
+    protected BmuCache bmuCache = null; // the training winners of each input, null to search every time
+    private BmuCache statsCache = null; // the winners of each input by squared Euclidean distance
+    protected boolean triangleSearch = false; // skip units by the triangle inequality
+    protected TriangleSearch triangle = null; // the training triangle search, made by those that use it
+    private Pacing pacing = Pacing.fixed(LONG_DELAY); // how fast run() iterates
+    private long progressInterval = 0L; // milliseconds between progress reports, 0 for none
 
 	private volatile boolean pleaseWait;
 	private volatile boolean pleaseStop;
@@ -58,6 +85,179 @@ abstract public class Algorithm implements Runnable {
     abstract protected void initialize();
     abstract protected void iterate();
     
+    /**
+     * Set how fast run() iterates.  The default sleeps LONG_DELAY
+     * milliseconds after every iteration.
+     * @param pacing Pacing
+     */
+    public void setPacing(Pacing pacing) {
+        this.pacing = pacing;
+        log.info("Pacing: " + pacing);
+    }
+    
+    public Pacing getPacing() {
+        return pacing;
+    }
+    
+    /**
+     * Log the iteration and the iterations per second every so often while
+     * run() iterates, however it is paced
+     * @param milliseconds long the time between reports, 0 for none
+     */
+    public void setProgressInterval(long milliseconds) {
+        progressInterval = milliseconds;
+    }
+    
+    /**
+     * Train with the vector kernels of the JDK Vector API where they can
+     * be used, or with the scalar kernels.  The vector distances are summed
+     * in full, without abandoning a losing unit; the dimension order, set
+     * after this, replaces them with its ordered scalar kernel.
+     * @param vectorized boolean
+     */
+    public void setVectorized(boolean vectorized) {
+        kernels = vectorized ? Kernels.vectorized() : Kernels.scalar();
+        kernel = kernels.distance(kernel.getPower());
+        log.info("Training kernels: " + kernels);
+    }
+    
+    public boolean isVectorized() {
+        return kernels.isVectorized();
+    }
+    
+    /**
+     * Sum the training distances over the most varied dimensions of the
+     * inputs first, so the winner searches abandon a losing unit sooner.
+     * The ordered kernels are scalar, and round L1 and the squared
+     * Euclidean distance differently in the last place.
+     * @param ordered boolean
+     */
+    public void setDimensionOrder(boolean ordered) {
+        if (ordered) {
+            kernel = kernel.ordered(byVariance(getInputs()));
+        } else {
+            kernel = kernels.distance(kernel.getPower());
+        }
+    }
+    
+    /**
+     * Find the winners through a kd-tree of the units rather than by
+     * measuring every unit.  This pays where a step moves only a few units,
+     * as in CL, GNG and GCS; NG and the SOM move every unit and ignore it.
+     * @param indexed boolean
+     */
+    public void setIndexed(boolean indexed) {
+        index = indexed ? new PrototypeIndex(getGraph()) : null;
+    }
+    
+    public boolean isIndexed() {
+        return index != null;
+    }
+    
+    /**
+     * Find the winners approximately, by walking the network graph from the
+     * last winner of each input.  GNG and GCS use it, as their edges follow
+     * the induced Delaunay triangulation; the others ignore it.
+     * @param greedy boolean
+     * @param verifyInterval int check every verifyInterval'th search exactly, 0 for never
+     */
+    public void setGreedySearch(boolean greedy, int verifyInterval) {
+        this.greedy = greedy ? new GreedySearch(getGraph(), verifyInterval) : null;
+    }
+    
+    public GreedySearch getGreedySearch() {
+        return greedy;
+    }
+    
+    /**
+     * Keep the winners of each input between epochs, and search again only
+     * when the drift of the units since may have changed them.  Training in
+     * CL, GNG and GCS uses it, and so do getSSE() and the induced
+     * triangulation whatever the algorithm.  The drift is measured in the
+     * training distance, which must be a metric.
+     * @param cached boolean
+     */
+    public void setBmuCache(boolean cached) {
+        if (cached && kernel.getPower() < 1.0d) {
+            log.warn("No BMU cache, as L" + kernel.getPower() + " is not a metric");
+            cached = false;
+        }
+        if (cached) {
+            // a ranking is trusted for up to two epochs, the longest an input goes unvisited
+            drift = new PrototypeDrift(getGraph(), iteration, kernel, 2 * getInputs().length);
+            bmuCache = new BmuCache(drift, kernel);
+            statsCache = new BmuCache(drift, DistanceKernel.SQUARED_L2);
+        } else {
+            drift = null;
+            bmuCache = null;
+            statsCache = null;
+        }
+    }
+    
+    public BmuCache getBmuCache() {
+        return bmuCache;
+    }
+    
+    /**
+     * Find the winner exactly, skipping the units the distances between
+     * the units rule out.  CL uses it, as its units are fixed in number, and
+     * so does getSSE() for every algorithm; the others ignore it.
+     * @param triangleSearch boolean
+     */
+    public void setTriangleSearch(boolean triangleSearch) {
+        if (triangleSearch && kernel.getPower() < 1.0d) {
+            log.warn("No triangle search in training, as L" + kernel.getPower() + " is not a metric");
+        }
+        this.triangleSearch = triangleSearch;
+        triangle = null;
+    }
+    
+    public TriangleSearch getTriangleSearch() {
+        return triangle;
+    }
+    
+    // Move a unit towards an input, w += rate * (x - w), keeping the drift
+    // and the index in step
+    protected void adapt(Vertex unit, double[] x, double rate) {
+        if (drift != null) {
+            drift.moving(unit, x, rate);
+        }
+        kernels.adapt(unit.getPosition(), x, rate);
+        if (index != null) {
+            index.moved(unit);
+        }
+    }
+    
+    // Keep the index and the caches in step with a unit added to the graph
+    protected void inserted(Vertex unit) {
+        if (index != null) {
+            index.insert(unit);
+        }
+        if (drift != null) {
+            drift.restructured();
+        }
+    }
+    
+    // Keep the index and the caches in step with a unit deleted from the graph
+    protected void removed(Vertex unit) {
+        if (index != null) {
+            index.remove(unit);
+        }
+        if (drift != null) {
+            drift.restructured();
+        }
+    }
+    
+    // Index the units afresh and forget the cached winners, after a batch of changes
+    protected void restructured() {
+        if (index != null) {
+            index.rebuild();
+        }
+        if (drift != null) {
+            drift.restructured();
+        }
+    }
+    
 
     // and sleep() for a while
     protected void delay(int milliseconds) {
@@ -82,35 +282,81 @@ abstract public class Algorithm implements Runnable {
     	pleaseWait=false;
     	pleaseStop=false;
     	initialize();
-        while (!pleaseStop) {
+    	if (drift != null) {
+    		drift.restructured();
+    	}
+    	final long started = System.nanoTime();
+        try {
+        	final int first = iteration.getCounter();
+        	long lastReport = started;
+        	int lastIteration = first;
+            while (!pleaseStop) {
         	
-				if (pleaseWait) {
-					log.debug("Pausing algorithm");
-					// Check if should wait 
-		        	synchronized (this) { 
-					try {
-
-		        		log.debug("Calling wait ");
-						wait();
-					} catch (Exception e) {
-						log.error(e.getMessage(), e);
-						System.exit(-2);
-					}
-		        	}
-				}
+    				if (pleaseWait) {
+    					log.debug("Pausing algorithm");
+    					// the readers see the network as it stands while paused
+    					getGraph().publish();
+    					// Check if should wait 
+    		        	synchronized (this) { 
+    					try {
+
+    		        		log.debug("Calling wait ");
+    						wait();
+    					} catch (Exception e) {
+    						log.error(e.getMessage(), e);
+    						System.exit(-2);
+    					}
+    		        	}
+    				}
 		
         	
-            // force a break when the dealer is finished
-            if (!dealer.hasNext()) {
-                this.stop();
-                break;
+                // force a break when the dealer is finished
+                if (!dealer.hasNext()) {
+                    this.stop();
+                    break;
+                }
+                	iterate();
+                    iteration.increment();
+                pacing.pace();
+                if (progressInterval > 0) {
+                    final long now = System.nanoTime();
+                    if (now - lastReport >= progressInterval * 1000000L) {
+                        final int at = iteration.getCounter();
+                        log.info("Iteration " + at + ", " + rate(at - lastIteration, now - lastReport) + " iterations/s");
+                        lastReport = now;
+                        lastIteration = at;
+                    }
+                }
+            } // End while less than epoch and RUN
+            getGraph().publish();
+            final long elapsed = System.nanoTime() - started;
+            log.info((iteration.getCounter() - first) + " iterations in " + (elapsed / 1000000L) + " ms, " +
+                     rate(iteration.getCounter() - first, elapsed) + " iterations/s, " + pacing);
+            if (greedy != null) {
+                log.info(greedy);
             }
-            	iterate();
-                iteration.increment();
-            this.delay(Algorithm.LONG_DELAY);
-        } // End while less than epoch and RUN
+            if (bmuCache != null) {
+                log.info(bmuCache);
+                log.info("SSE " + statsCache);
+            }
+            if (triangle != null) {
+                log.info(triangle);
+            }
+        }
+        finally {
+            finished();
+        }
     } // end run()
     
+    // Release what the iterations held, once run() has stopped, however it stopped
+    protected void finished() {
+    }
+    
+    // iterations per second, to the nearest
+    private static long rate(int iterations, long nanoseconds) {
+        return (nanoseconds <= 0) ? 0 : Math.round(iterations * 1.0e9d / nanoseconds);
+    }
+    
     public void stop() {
     	this.pleaseStop = true;
     }
@@ -132,12 +378,23 @@ abstract public class Algorithm implements Runnable {
      * @return double
      */
     public double getSSE() {
-      final Vertex [] v = new Vertex[this.getGraph().numVertices()];
-      int count = 0;
-      for (java.util.Iterator<Vertex> i = this.getGraph().getAllVertices(); i.hasNext(); count++){
-        v[count] = ((Vertex)i.next());
+      final GraphSnapshot network = this.getGraph().getPublished();
+      final Vertex [] v = new Vertex[network.numVertices()];
+      for (int count = 0; count < v.length; count++){
+        v[count] = network.getVertex(count);
+      }
+      if (statsCache == null && triangleSearch) {
+        final TriangleSearch search = new TriangleSearch(v, DistanceKernel.SQUARED_L2);
+        final double sse = (new Classification(this.getInputs(), v, search)).sse();
+        log.debug("SSE " + search);
+        return sse;
+      }
+      if (statsCache == null) {
+        return (new Classification(this.getInputs(), v)).sse();
+      }
+      synchronized (statsCache) {
+        return (new Classification(this.getInputs(), v, network, statsCache)).sse();
       }
-      return (new Classification(this.getInputs(), v)).sse();
     }
 
 
@@ -150,23 +407,38 @@ abstract public class Algorithm implements Runnable {
       Graph triangulation = new Graph();
 
       // Create an array of references to the algorithm graph vertices
-      Vertex [] v = new Vertex[this.getGraph().numVertices()];
-      int count = 0;
-      for (java.util.Iterator<Vertex> i = this.getGraph().getAllVertices(); i.hasNext(); count++){
-        v[count] = ((Vertex)i.next());
+      final GraphSnapshot network = this.getGraph().getPublished();
+      Vertex [] v = new Vertex[network.numVertices()];
+      for (int count = 0; count < v.length; count++){
+        v[count] = network.getVertex(count);
         triangulation.addVertex(v[count]);
       }
 
 
       // iterate over all members of the input data, and
       // create the induced Delaunay Triangulation
-      java.util.TreeMap<Double,Vertex> map = new java.util.TreeMap<Double,Vertex>();
       final Vertex [] inputs = this.getInputs();
+      if (statsCache != null) {
+        // the cache keeps the first of units at equal distances, not the last
+        final Winners winners = new Winners();
+        synchronized (statsCache) {
+          for (int i = 0; i < inputs.length; i++) {
+            statsCache.nearest(inputs[i], network, winners);
+            final Vertex vc = winners.getFirst();
+            final Vertex vs = winners.getSecond();
+            if ( !triangulation.areConnected(vc,vs) ) {
+              triangulation.addEdge(new ConcreteEdge(vc, vs));
+            }
+          }
+        }
+        return triangulation;
+      }
+      java.util.TreeMap<Double,Vertex> map = new java.util.TreeMap<Double,Vertex>();
       for (int i = 0; i < inputs.length; i++) {
         map.clear();
         Vertex input = inputs[i];
         for (int j = 0; j < v.length; j++ ) {
-          map.put(new Double( Vertex.Minkowski(2.0d, input.getPosition(), v[j].getPosition())),v[j]);
+          map.put(new Double( DistanceKernel.SQUARED_L2.distance(input.getPosition(), v[j].getPosition())),v[j]);
         }
 
         Vertex vc = map.remove( map.firstKey() );
@@ -197,23 +469,26 @@ abstract public class Algorithm implements Runnable {
      */
     private double createTopologyMeasure() {
 
-      Graph network = this.getGraph();
+      // work on a fixed copy, so the network may go on training meanwhile
+      GraphSnapshot network = this.getGraph().getPublished();
       Matrix nm = new Matrix(network.numVertices(), network.numVertices());
 
       Graph induced = this.getInducedDelaunayTriangulation();
-      Matrix im = new Matrix(induced.numVertices(), induced.numVertices());
+      Matrix im = new Matrix(network.numVertices(), network.numVertices());
 
       // create the adjacency matrices
 
-      int ii = 0;
       Vertex [] vit = new Vertex[network.numVertices()];
-      for (Iterator<Vertex> i = network.getAllVertices(); i.hasNext(); ) {
-        vit[ii++] = i.next();
+      for (int ii = 0; ii < vit.length; ii++) {
+        vit[ii] = network.getVertex(ii);
       }
+      // one breadth first search per vertex, shared over the processors
+      final int [][] nd = HopDistances.allPairs(network, true);
+      final int [][] id = HopDistances.allPairs(induced.snapshot(), vit, true);
       for (int vii = 0; vii < vit.length; vii++) {
         for (int vjj = 0; vjj < vit.length; vjj++) {
-          nm.set(vii, vjj, network.distance(vit[vii],vit[vjj]));
-          im.set(vii, vjj, induced.distance(vit[vii],vit[vjj]));
+          nm.set(vii, vjj, nd[vii][vjj]);
+          im.set(vii, vjj, id[vii][vjj]);
         }
       }
       return HC(nm,im);
@@ -276,6 +551,46 @@ abstract public class Algorithm implements Runnable {
 
 
 
+    /**
+     * The dimensions of the inputs, most varied first
+     * @param inputs Vertex[]
+     * @return int[]
+     */
+    final protected static int[] byVariance(final Vertex[] inputs) {
+        final int d = (inputs.length == 0) ? 0 : inputs[0].getPosition().length;
+        final double[] mean = new double[d];
+        final double[] variance = new double[d];
+        for (int i = 0; i < inputs.length; i++) {
+            final double[] x = inputs[i].getPosition();
+            for (int k = 0; k < d; k++) {
+                mean[k] += x[k];
+            }
+        }
+        for (int k = 0; k < d; k++) {
+            mean[k] /= inputs.length;
+        }
+        for (int i = 0; i < inputs.length; i++) {
+            final double[] x = inputs[i].getPosition();
+            for (int k = 0; k < d; k++) {
+                variance[k] += (x[k] - mean[k]) * (x[k] - mean[k]);
+            }
+        }
+        final Integer[] order = new Integer[d];
+        for (int k = 0; k < d; k++) {
+            order[k] = Integer.valueOf(k);
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(final Integer a, final Integer b) {
+                return Double.compare(variance[b.intValue()], variance[a.intValue()]);
+            }
+        });
+        final int[] result = new int[d];
+        for (int k = 0; k < d; k++) {
+            result[k] = order[k].intValue();
+        }
+        return result;
+    }
+
     /**
      * Helper function to generate a d-dimensional array of randoms
      * @param d int
@@ -322,6 +637,50 @@ class Classification {
       classify(input, output);
     }
 
+    /**
+     * Classify with a TriangleSearch over the units
+     * @param in Vertex[] the inputs
+     * @param out Vertex[] the units
+     * @param search TriangleSearch over out, by squared Euclidean distance
+     */
+    Classification (final Vertex [] in, final Vertex [] out, final TriangleSearch search){
+      input = in;
+      output = out;
+      outlen = output.length;
+      inlen = input.length;
+      theClassification = new Cluster[outlen];
+      for (int i = 0; i < outlen; i++) {
+        theClassification[i] = new Cluster();
+      }
+      for (int i = inlen; --i >= 0; ){
+        theClassification[search.nearest(input[i].getPosition())].add(input[i]);
+      }
+    }
+
+    /**
+     * Classify with the winners kept in a BmuCache, by squared Euclidean distance
+     * @param in Vertex[] the inputs
+     * @param out Vertex[] the units of the network snapshot, in its order
+     * @param network GraphSnapshot the snapshot
+     * @param cache BmuCache
+     */
+    Classification (final Vertex [] in, final Vertex [] out,
+                    final GraphSnapshot network, final BmuCache cache){
+      input = in;
+      output = out;
+      outlen = output.length;
+      inlen = input.length;
+      theClassification = new Cluster[outlen];
+      for (int i = 0; i < outlen; i++) {
+        theClassification[i] = new Cluster();
+      }
+      final Winners winners = new Winners();
+      for (int i = inlen; --i >= 0; ){
+        cache.nearestOne(input[i], network, winners);
+        theClassification[network.indexOf(winners.getFirst())].add(input[i]);
+      }
+    }
+
 
 
     final private void classify(final Vertex [] in, final Vertex [] out){
@@ -334,7 +693,7 @@ class Classification {
         smallest = 0;
         dist = Double.MAX_VALUE;
         for (n = 0; n < outlen; n++){
-          d = Vertex.Minkowski(2.0d,in[i].getPosition(), out[n].getPosition());
+          d = DistanceKernel.SQUARED_L2.distance(in[i].getPosition(), out[n].getPosition(), dist);
           if (d < dist) {
             dist = d;
             smallest = n;
@@ -350,7 +709,7 @@ class Classification {
         Cluster c = theClassification[i];
         Vertex u = (Vertex) output[i];
         for (int j = 0; j < c.size(); j++){
-          sse += Math.pow(Vertex.Minkowski(2.0d, c.get(j).getPosition(), u.getPosition()), 2.0d);
+          sse += Math.pow(DistanceKernel.SQUARED_L2.distance(c.get(j).getPosition(), u.getPosition()), 2.0d);
         }
       }
       return sse;
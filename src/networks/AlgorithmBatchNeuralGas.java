@@ -0,0 +1,289 @@
+package networks;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import support.*;
+import structures.*;
+
+/**
+ * <p>Title: Batch Neural Gas</p>
+ * <p>Description: The batch Neural Gas algorithm, after Cottrell, Hammer,
+ * Hasenfuss and Villmann.  Each iteration is an epoch: every input ranks
+ * all the units, and then every unit is put at the mean of the inputs,
+ * each weighted by exp(-k/lambda) for the rank k it gave the unit.</p>
+ * <p>lambda shrinks from the initial to the final neighbourhood of the NG
+ * schedule over the epochs.  The closed form takes the place of the
+ * learning rate, so the NG learning rates are not used.  With a rank
+ * tolerance only the ranks whose weight is at least the tolerance are
+ * counted, as in AlgorithmNeuralGas.</p>
+ * <p>The inputs are ranked in parallel on a ForkJoinPool, in at most CHUNKS
+ * chunks of at least BLOCK inputs.  Each chunk sums into accumulators of
+ * its own, kept from epoch to epoch, and the sums are merged in chunk order
+ * once all are done.  The chunks depend on the inputs alone, so a run comes
+ * out the same on any number of threads.</p>
+ * @version 1.0
+ * @version 1.1 The pool is shut down however run() returns
+ * @version 1.2 Exactly the epochs asked for, the last at the final neighbourhood
+ */
+final public class AlgorithmBatchNeuralGas extends Algorithm {
+    /** The most chunks the inputs are split into */
+    private static final int CHUNKS = 64;
+
+    /** The fewest inputs in a chunk */
+    private static final int BLOCK = 256;
+
+    // internal parameters passed in from main
+    private Vertex[] theInputs; // the input space data
+    private int ndatumsMax; // number of graph vertices
+    private int dataDimension; // Data dimensionality
+    private double norm; // The distance norm
+    private int epoch; // Number of epochs to run for
+    private double li;
+    private double lf;
+
+    private int T_MAX;
+    private double rankTolerance = 0.0d; // smallest neighbourhood factor counted, 0 for all
+    private int threads = 0; // ranking threads, 0 for one per processor
+    private ForkJoinPool pool = null;
+    private Chunk[] chunks;
+    private int label = 0; // Label the vertices of the graph
+
+    Graph  graph = new Graph();
+    public Graph getGraph() {
+        return graph;
+    }
+
+    public Vertex [] getInputs() {
+      return theInputs;
+    }
+
+
+    /**
+     * @param _data_ The data to be classified
+     * @param _dataDim_ The dimension of the data
+     * @param _epoch_ The number of epochs to run for
+     * @param _power_ The Minkowski norm to be used for training
+     * @param _maxNodes_ The size of the network
+     * @param _neighbourhood_initial_
+     * @param _neighbourhood_final_
+     */
+    public AlgorithmBatchNeuralGas(Vertex[] _data_,
+                                   int _dataDim_,
+                                   int _epoch_,
+                                   double _power_,
+                                   int _maxNodes_,
+                                   double _neighbourhood_initial_,
+                                   double _neighbourhood_final_) {
+        super();
+        theInputs = _data_;
+        ndatumsMax = _maxNodes_;
+        dataDimension = _dataDim_;
+        norm = _power_;
+        kernel = kernels.distance(norm);
+        epoch = _epoch_;
+
+        li = _neighbourhood_initial_;
+        lf = _neighbourhood_final_;
+
+        init();
+    }
+
+    final private void init() {
+        // The dealer hands out the whole data set once an epoch
+        dealer = new Dealer(new Object[] {theInputs}, epoch);
+        // randomise all the reference vectors, as the online NG does
+        for (int i = 0; i < ndatumsMax; i++) {
+            if (log.isDebugEnabled()) {
+                double[] p1 = {0.1d,0.99d};
+                graph.addVertex(new GNGVertex(p1, String.valueOf(label++)));
+            } else {
+                graph.addVertex(new GNGVertex(rnd(dataDimension), String.valueOf(label++)));
+            }
+        }
+        // split the inputs into chunks
+        final int count = Math.max(1, Math.min(CHUNKS, theInputs.length / BLOCK));
+        chunks = new Chunk[count];
+        for (int c = 0; c < count; c++) {
+            chunks[c] = new Chunk((int)(((long)theInputs.length) * c / count),
+                                  (int)(((long)theInputs.length) * (c + 1) / count));
+        }
+        // Total number of iterations
+        T_MAX = epoch;
+    }
+
+    protected void initialize() {
+
+    }
+
+    /**
+     * Count only the ranks k whose neighbourhood factor exp(-k/lambda) is at
+     * least the tolerance, found with a bounded heap
+     * @param tolerance double in (0, 1), or 0 to count every rank
+     */
+    public void setRankTolerance(double tolerance) {
+        if (tolerance < 0.0d || tolerance >= 1.0d) {
+            System.err.print("BATCH-NG: rank tolerance must be in [0, 1): " + tolerance + "\n");
+            throw new IllegalArgumentException("rank tolerance " + tolerance);
+        }
+        rankTolerance = tolerance;
+    }
+
+    public double getRankTolerance() {
+        return rankTolerance;
+    }
+
+    /**
+     * The number of threads to rank the inputs on
+     * @param threads int 1 or more, or 0 for one per processor
+     */
+    public void setThreads(int threads) {
+        if (threads < 0) {
+            System.err.print("BATCH-NG: threads must be 0 or more: " + threads + "\n");
+            throw new IllegalArgumentException("threads " + threads);
+        }
+        this.threads = threads;
+    }
+
+    public int getThreads() {
+        return (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    // The number of ranks k from 0 with exp(-k/lt) >= rankTolerance
+    private int ranks(double lt, int units) {
+        if (rankTolerance == 0.0d) {
+            return units;
+        }
+        double k = Math.floor(lt * Math.log(1.0d / rankTolerance)) + 1.0d;
+        return (k < units) ? (int)k : units;
+    }
+
+    protected void iterate() {
+        dealer.getNext();
+        // Set up the time dependencies, from li at the first epoch to lf at the last
+        final double power = Math.min(1.0d, ((double)(iteration.getCounter() - 1)) / ((double)Math.max(1, T_MAX - 1)));
+        final double lt = li * Math.pow(lf / li, power);
+        // Take the units and a copy of their positions, read by every chunk
+        final Vertex[] units = new Vertex[graph.numVertices()];
+        final double[][] positions = new double[units.length][];
+        int n = 0;
+        for (Iterator<Vertex> e = graph.getAllVertices(); e.hasNext() && n < units.length; n++) {
+            units[n] = e.next();
+            positions[n] = units[n].getPosition().clone();
+        }
+        final double[] weight = new double[ranks(lt, n)];
+        for (int k = 0; k < weight.length; k++) {
+            weight[k] = Math.exp(-k / lt);
+        }
+        // Rank the inputs in parallel
+        if (pool == null) {
+            pool = new ForkJoinPool(getThreads());
+        }
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c].prepare(units, positions, weight);
+        }
+        try {
+            final List<Future<Object>> done = pool.invokeAll(Arrays.<Callable<Object>>asList(chunks));
+            for (int c = 0; c < done.size(); c++) {
+                done.get(c).get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        catch (ExecutionException e) {
+            log.error("Ranking failed", e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+        // Merge the chunks in order, and put each unit at its weighted mean
+        final double[] target = new double[dataDimension];
+        for (int j = 0; j < units.length; j++) {
+            double total = 0.0d;
+            Arrays.fill(target, 0.0d);
+            for (int c = 0; c < chunks.length; c++) {
+                total += chunks[c].total[j];
+                final double[] sum = chunks[c].sum[j];
+                for (int d = 0; d < dataDimension; d++) {
+                    target[d] += sum[d];
+                }
+            }
+            // a unit no input counted stays where it is
+            if (total > 0.0d) {
+                for (int d = 0; d < dataDimension; d++) {
+                    target[d] /= total;
+                }
+                adapt(units[j], target, 1.0d);
+            }
+        }
+        // the Dealer would deal one epoch more than asked for
+        if (iteration.getCounter() >= T_MAX) {
+            stop();
+        }
+    }
+
+    // Shut the ranking threads down when run() returns, at the end or on a stop
+    protected void finished() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /** The inputs of one chunk, and the weighted sums they give each unit */
+    private final class Chunk implements Callable<Object> {
+        private final int from;
+        private final int to;
+        private final NearestUnits nearest = new NearestUnits();
+        private Vertex[] units;
+        private double[][] positions;
+        private double[] weight;
+        double[][] sum = new double[0][];
+        double[] total = new double[0];
+
+        Chunk(final int from, final int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        // Read the units of this epoch, and clear the sums
+        void prepare(final Vertex[] units, final double[][] positions, final double[] weight) {
+            this.units = units;
+            this.positions = positions;
+            this.weight = weight;
+            if (sum.length != units.length) {
+                sum = new double[units.length][dataDimension];
+                total = new double[units.length];
+            } else {
+                for (int j = 0; j < sum.length; j++) {
+                    Arrays.fill(sum[j], 0.0d);
+                }
+                Arrays.fill(total, 0.0d);
+            }
+        }
+
+        public Object call() {
+            for (int i = from; i < to; i++) {
+                final double[] x = theInputs[i].getPosition();
+                nearest.clear(weight.length);
+                for (int j = 0; j < units.length; j++) {
+                    nearest.offer(units[j], kernel.distance(x, positions[j], nearest.getLimit()));
+                }
+                final int size = nearest.sort();
+                for (int k = 0; k < size; k++) {
+                    final int j = nearest.getOffered(k);
+                    final double h = weight[k];
+                    final double[] s = sum[j];
+                    total[j] += h;
+                    for (int d = 0; d < s.length; d++) {
+                        s[d] += h * x[d];
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+}
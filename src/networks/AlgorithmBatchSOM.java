@@ -0,0 +1,309 @@
+package networks;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import support.*;
+import structures.*;
+
+/**
+ *
+ * <p>Title: Competitive Learning</p>
+ *
+ * <p>Description: The batch SOM, after Kohonen.  Each iteration is an
+ * epoch: every input finds its best matching unit, and then every unit is
+ * put at the mean of the inputs, each weighted by the neighbourhood
+ * exp(-d^2 / 2 sigma^2) of the grid distance d from its BMU to the unit.
+ * The grid and the neighbourhood are those of AlgorithmSOM, with sigma
+ * shrinking from the initial to the final neighbourhood over the epochs.
+ * The closed form takes the place of the learning rate, so the SOM
+ * learning rates are not used.</p>
+ *
+ * <p>The weighted sums over the inputs are the neighbourhood times the sums
+ * over the inputs of each BMU, so only the count and the sum of the inputs
+ * of each BMU are accumulated, and the neighbourhood is applied once an
+ * epoch, over the pairs of units.</p>
+ *
+ * <p>The BMUs are found in parallel on a ForkJoinPool, in at most CHUNKS
+ * chunks of at least BLOCK inputs.  Each chunk sums into accumulators of
+ * its own, kept from epoch to epoch, and the sums are merged in chunk order
+ * once all are done.  The chunks depend on the inputs alone, so a run comes
+ * out the same on any number of threads.</p>
+ *
+ * @version 1.0
+ * @version 1.1 The pool is shut down however run() returns
+ * @version 1.2 Exactly the epochs asked for, the last at the final neighbourhood
+ */
+
+public class AlgorithmBatchSOM extends Algorithm {
+    /** The most chunks the inputs are split into */
+    private static final int CHUNKS = 64;
+
+    /** The fewest inputs in a chunk */
+    private static final int BLOCK = 256;
+
+    // SOM parameters passed in from the command line
+    private double li;
+    private double lf;
+
+    private Vertex[] theInputs; // the input space data
+    private int dataDimension; // Data dimensionality
+    private double norm; // The distance norm
+    private int epoch; // Number of epochs to run for
+    private int nRows;
+    private int nColumns;
+
+    private int T_MAX;
+
+    private int threads = 0; // BMU search threads, 0 for one per processor
+    private ForkJoinPool pool = null;
+    private Chunk[] chunks;
+
+    private int label = 0;
+
+    private SOMVertex[][] theSOM;
+
+    /** The units in row major order, and copies of their positions, read by every chunk */
+    private SOMVertex[] units;
+    private double[][] positions;
+
+    public AlgorithmBatchSOM(Vertex[] _data_,
+                             int _dataDim_,
+                             int _epoch_,
+                             double _power_,
+                             int _rows_,
+                             int _columns_,
+                             double _neighbourhood_initial_,
+                             double _neighbourhood_final_) {
+
+        // pass the command line parameters
+        theInputs = _data_;
+        dataDimension = _dataDim_;
+        norm = _power_;
+        kernel = kernels.distance(norm);
+        epoch = _epoch_;
+        nRows = _rows_;
+        nColumns = _columns_;
+        li = _neighbourhood_initial_;
+        lf = _neighbourhood_final_;
+
+        init();
+    }
+
+
+    Graph  graph = new Graph();
+    public Graph getGraph() {
+        return graph;
+    }
+
+    public Vertex [] getInputs() {
+      return theInputs;
+    }
+
+
+
+    final private void init() {
+
+        theSOM = new SOMVertex[nRows][nColumns];
+        units = new SOMVertex[nRows * nColumns];
+        positions = new double[units.length][dataDimension];
+
+        // The dealer hands out the whole data set once an epoch
+        dealer = new Dealer(new Object[] {theInputs}, epoch);
+        // randomise the reference vectors, as the online SOM does
+        for (int r = 0; r < nRows; r++) {
+            for (int c = 0; c < nColumns; c++) {
+              SOMVertex vertex;
+              if (log.isDebugEnabled()) {
+                double[] p1 = {0.1d,0.99d};
+                vertex = new SOMVertex(p1, String.valueOf(label++));
+              } else {
+                vertex = new SOMVertex(rnd(dataDimension), String.valueOf(label++));
+              }
+              theSOM[r][c] = vertex;
+              units[r * nColumns + c] = vertex;
+              graph.addVertex(vertex);
+            }
+        }
+
+        // Connect the vertices
+        for (int r = 0; r < nRows-1; r++) {
+            for (int c = 0; c < nColumns-1; c++) {
+                graph.addEdge(new SOMEdge(theSOM[r][c], theSOM[r][c+1]));
+                graph.addEdge(new SOMEdge(theSOM[r][c], theSOM[r+1][c]));
+            }
+        }
+        // Fill in the boundary edges of the graph
+        for (int r = 0; r < nRows-1; r++) {
+            graph.addEdge(new SOMEdge(theSOM[r][nColumns-1], theSOM[r+1][nColumns-1]));
+        }
+        for (int c = 0; c < nColumns-1; c++) {
+            graph.addEdge(new SOMEdge(theSOM[nRows-1][c], theSOM[nRows-1][c+1]));
+        }
+
+        // split the inputs into chunks
+        final int count = Math.max(1, Math.min(CHUNKS, theInputs.length / BLOCK));
+        chunks = new Chunk[count];
+        for (int k = 0; k < count; k++) {
+            chunks[k] = new Chunk((int)(((long)theInputs.length) * k / count),
+                                  (int)(((long)theInputs.length) * (k + 1) / count));
+        }
+
+        // Total number of iterations
+        T_MAX = epoch;
+
+    }
+
+
+   protected void initialize() {
+   }
+
+   /**
+    * The number of threads to find the BMUs on
+    * @param threads int 1 or more, or 0 for one per processor
+    */
+   public void setThreads(int threads) {
+       if (threads < 0) {
+           System.err.print("BATCH-SOM: threads must be 0 or more: " + threads + "\n");
+           throw new IllegalArgumentException("threads " + threads);
+       }
+       this.threads = threads;
+   }
+
+   public int getThreads() {
+       return (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+   }
+
+   protected void iterate() {
+       dealer.getNext();
+       // Set up the time dependencies, from li at the first epoch to lf at the last
+       double power = Math.min(1.0d, ((double)(iteration.getCounter() - 1)) / ((double)Math.max(1, T_MAX - 1)));
+       // Neighbourhood size
+       double lt = li * Math.pow(lf/li,power);
+       double ltlt2 = lt * lt * 2;
+
+       for (int u = 0; u < units.length; u++) {
+           System.arraycopy(units[u].getPosition(), 0, positions[u], 0, dataDimension);
+       }
+       // Find the BMUs in parallel
+       if (pool == null) {
+           pool = new ForkJoinPool(getThreads());
+       }
+       for (int k = 0; k < chunks.length; k++) {
+           chunks[k].clear();
+       }
+       try {
+           final List<Future<Object>> done = pool.invokeAll(Arrays.<Callable<Object>>asList(chunks));
+           for (int k = 0; k < done.size(); k++) {
+               done.get(k).get();
+           }
+       }
+       catch (InterruptedException e) {
+           Thread.currentThread().interrupt();
+           return;
+       }
+       catch (ExecutionException e) {
+           log.error("BMU search failed", e.getCause());
+           throw new RuntimeException(e.getCause());
+       }
+       // Merge the chunks in order
+       final double[] count = new double[units.length];
+       final double[][] sum = new double[units.length][dataDimension];
+       for (int k = 0; k < chunks.length; k++) {
+           for (int b = 0; b < units.length; b++) {
+               count[b] += chunks[k].count[b];
+               final double[] s = chunks[k].sum[b];
+               for (int d = 0; d < dataDimension; d++) {
+                   sum[b][d] += s[d];
+               }
+           }
+       }
+       // Grid neighbourhood by distance, as in the online SOM
+       final double[] h = new double[nRows + nColumns - 1];
+       for (int d = 0; d < h.length; d++) {
+           h[d] = Math.exp( -((double)(d * d)) / ltlt2 );
+       }
+       // put each unit at the neighbourhood weighted mean of the BMU sums
+       final double[] target = new double[dataDimension];
+       for (int r = 0; r < nRows; r++) {
+         for (int c = 0; c < nColumns; c++) {
+           double total = 0.0d;
+           Arrays.fill(target, 0.0d);
+           for (int b = 0; b < units.length; b++) {
+             if (count[b] == 0.0d) {
+               continue;
+             }
+             final double hrs = h[Math.abs(b / nColumns - r) + Math.abs(b % nColumns - c)];
+             total += hrs * count[b];
+             for (int d = 0; d < dataDimension; d++) {
+               target[d] += hrs * sum[b][d];
+             }
+           }
+           // a unit too far from every BMU stays where it is
+           if (total > 0.0d) {
+             for (int d = 0; d < dataDimension; d++) {
+               target[d] /= total;
+             }
+             adapt(theSOM[r][c], target, 1.0d);
+           }
+         }
+       }
+       // the Dealer would deal one epoch more than asked for
+       if (iteration.getCounter() >= T_MAX) {
+           stop();
+       }
+   }
+
+   // Shut the BMU search threads down when run() returns, at the end or on a stop
+   protected void finished() {
+       if (pool != null) {
+           pool.shutdown();
+           pool = null;
+       }
+   }
+
+   /** The inputs of one chunk, and the count and sum of the inputs of each BMU */
+   private final class Chunk implements Callable<Object> {
+       private final int from;
+       private final int to;
+       final double[] count = new double[units.length];
+       final double[][] sum = new double[units.length][dataDimension];
+
+       Chunk(final int from, final int to) {
+           this.from = from;
+           this.to = to;
+       }
+
+       void clear() {
+           Arrays.fill(count, 0.0d);
+           for (int b = 0; b < sum.length; b++) {
+               Arrays.fill(sum[b], 0.0d);
+           }
+       }
+
+       public Object call() {
+           for (int i = from; i < to; i++) {
+               final double[] x = theInputs[i].getPosition();
+               // the first of the nearest units in row major order, as the online scan
+               double minerror = Double.MAX_VALUE;
+               int bmu = 0;
+               for (int u = 0; u < positions.length; u++) {
+                   final double error = kernel.distance(x, positions[u], minerror);
+                   if (error < minerror) {
+                       minerror = error;
+                       bmu = u;
+                   }
+               }
+               count[bmu] += 1.0d;
+               final double[] s = sum[bmu];
+               for (int d = 0; d < s.length; d++) {
+                   s[d] += x[d];
+               }
+           }
+           return null;
+       }
+   }
+
+}
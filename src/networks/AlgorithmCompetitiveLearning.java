@@ -1,6 +1,12 @@
 package networks;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import support.*;
 import structures.*;
 
@@ -10,12 +16,31 @@ import structures.*;
  *
  * <p>Description: The Competitve Learning Algorithm</p>
  *
+ * <p>Given workers, training is Hogwild, after Recht, Re, Wright and Niu.
+ * Each iteration is then an epoch: the inputs are shuffled and dealt out
+ * in disjoint shards, one to each worker, and the workers find and move
+ * the winners of their inputs in a shared array of the unit positions at
+ * once, without locks.  Only the winner moves, so with many units two
+ * workers seldom move the same one, and a read of a unit half moved by
+ * another worker costs no more than a slightly stale winner.  The units
+ * are set to the shared positions after each epoch, and the counter is
+ * advanced by an input a step.  One worker runs the same shuffled epochs
+ * on the algorithm thread, so it is the baseline the rate and SSE of more
+ * workers compare against; without workers the inputs come one at a time
+ * from the Dealer, whose draws cost more than the shuffle.  The winner
+ * searches of Algorithm are not used by the workers.</p>
+ *
  * <p>Copyright: Copyright (c) 2005</p>
  *
  * <p>Company: University of Hertfordshire</p>
  *
  * @author Kevin Doherty (K.A.J.Doherty@herts.ac.uk)
  * @version 1.0
+ * @version 1.1 Optional kd-tree winner search
+ * @version 1.2 Optional BMU cache of the winner of each input
+ * @version 1.3 Optional triangle inequality search for the winner
+ * @version 1.4 The scan abandons a unit once it is farther than the best so far
+ * @version 1.5 Optional lock free training on several workers
  */
 
 public class AlgorithmCompetitiveLearning extends Algorithm {
@@ -27,8 +52,15 @@ public class AlgorithmCompetitiveLearning extends Algorithm {
     private int epoch; // Number of epochs to run for
     private double EPSILONB; // WTA learning rate
     private ErrorTable errorTable; // local error table
+    private Winners winners = new Winners(); // the winner, from the index
     private int label = 0; // Label the vertices of the graph
 
+    private int workers = 0; // Hogwild training threads, 0 for the Dealer
+    private ExecutorService pool = null; // the workers, while training
+    private double[][] shared; // the unit positions the workers share
+    private int[] order; // the inputs, shuffled each epoch
+    private int epochsLeft = 0; // Hogwild epochs still to run
+
     Graph  graph = new Graph();
     public Graph getGraph() {
         return graph;
@@ -52,6 +84,7 @@ public class AlgorithmCompetitiveLearning extends Algorithm {
             ndatumsMax = _maxNodes_;
             dataDimension = _dataDim_;
             norm = _power_;
+            kernel = kernels.distance(norm);
             epoch = _epoch_;
             EPSILONB = _epsilonb_;
             init();
@@ -71,14 +104,35 @@ public class AlgorithmCompetitiveLearning extends Algorithm {
             }
         }
         // algorithm has an error table
-        errorTable = new ErrorTable();
+        errorTable = new ErrorTable(graph);
     }
     
     protected void initialize() {
     	
     }
     
+    /**
+     * Train an epoch at a time on workers, without locks
+     * @param workers int 1 or more, 1 for the shuffled epochs on the
+     * algorithm thread, or 0 to draw the inputs one at a time from the Dealer
+     */
+    public void setWorkers(int workers) {
+        if (workers < 0) {
+            System.err.print("CL: workers must be 0 or more: " + workers + "\n");
+            throw new IllegalArgumentException("workers " + workers);
+        }
+        this.workers = workers;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+    
     protected void iterate() {
+        if (workers > 0) {
+            hogwild();
+            return;
+        }
     	Vertex input;
         if (log.isDebugEnabled()) {
             input = (Vertex)dealer.getNextFixed();
@@ -86,24 +140,159 @@ public class AlgorithmCompetitiveLearning extends Algorithm {
             input = (Vertex)dealer.getNext();
         }
         final double[] inputpos = input.getPosition();
-        // Generate global error table
-        errorTable.clear();
-        for (Iterator<Vertex> e = graph.getAllVertices(); e.hasNext(); ) {
-            GNGVertex vertex = ((GNGVertex)e.next());
-            errorTable.addEntry(vertex, GNGVertex.Minkowski(norm, inputpos, vertex.getPosition()));
-        }
-        // ErrorTable iterator returns an ordered Iterator.  As this is
-        // a WTA algorithm, we simply get the winner, update it and break.
-        for (Iterator<Entry> e = errorTable.getEntries(); e.hasNext(); ) {
-            Vertex vertex = (Vertex)((e.next()).getVertex());
-            double[] pws1 = vertex.getPosition();
-            for (int i = 0; i < dataDimension; i++) {
-                pws1[i] = pws1[i] + (EPSILONB * (inputpos[i] - pws1[i]));
+        // As this is a WTA algorithm, we simply select the winner and
+        // update it.
+        Vertex vertex = null;
+        if (bmuCache != null) {
+            bmuCache.nearestOne(input, graph, winners);
+            vertex = winners.getFirst();
+        } else if (triangleSearch && kernel.getPower() >= 1.0d) {
+            if (triangle == null) {
+                triangle = new TriangleSearch(graph.getVerticesArray(), kernel);
+            }
+            final int i = triangle.nearest(inputpos);
+            if (i >= 0) {
+                vertex = triangle.getUnit(i);
+                triangle.moving(i, triangle.getError(), EPSILONB);
+            }
+        } else if (index != null) {
+            index.nearest(inputpos, kernel, winners);
+            vertex = winners.getFirst();
+        } else {
+            // Generate global error table
+            errorTable.clear();
+            double best = Double.POSITIVE_INFINITY;
+            for (Iterator<Vertex> e = graph.getAllVertices(); e.hasNext(); ) {
+                GNGVertex candidate = ((GNGVertex)e.next());
+                final double error = kernel.distance(inputpos, candidate.getPosition(), best);
+                errorTable.addEntry(candidate, error);
+                if (error < best) {
+                    best = error;
+                }
+            }
+            if (errorTable.select(1) > 0) {
+                vertex = errorTable.getVertex(0);
             }
-            vertex.setPosition(pws1);
-            break;
+        }
+        if (vertex != null) {
+            adapt(vertex, inputpos, EPSILONB);
         }
 	
     }
+
+    // One epoch on the workers, each taking a shard of a shuffle of the inputs
+    private void hogwild() {
+        final Vertex[] units = graph.getVerticesArray();
+        if (shared == null) {
+            if (bmuCache != null || triangleSearch || index != null || greedy != null) {
+                log.warn("The " + workers + " CL workers scan for the winner, ignoring the winner search options");
+            }
+            shared = new double[units.length][dataDimension];
+            order = new int[theInputs.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+        }
+        // a run from the start, or again after the last epoch
+        if (epochsLeft == 0) {
+            epochsLeft = epoch;
+        }
+        if (pool == null && workers > 1) {
+            // daemon threads, so a pool left behind never keeps the JVM alive
+            pool = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "CL worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        for (int j = 0; j < units.length; j++) {
+            System.arraycopy(units[j].getPosition(), 0, shared[j], 0, dataDimension);
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            final int k = (int)(Math.random() * (i + 1));
+            final int swap = order[i];
+            order[i] = order[k];
+            order[k] = swap;
+        }
+        if (workers == 1) {
+            // the baseline, the same epoch with no hand over to a pool
+            train(0, order.length);
+        } else if (!shard()) {
+            return;
+        }
+        for (int j = 0; j < units.length; j++) {
+            adapt(units[j], shared[j], 1.0d);
+        }
+        // an input a step, as from the Dealer; run() counts the last
+        iteration.incrementCounter(theInputs.length - 1);
+        if (--epochsLeft == 0) {
+            stop();
+        }
+    }
+    
+    // Train the shards of an epoch on the pool, one to each worker, false if interrupted
+    private boolean shard() {
+        final List<Callable<Object>> shards = new ArrayList<Callable<Object>>(workers);
+        for (int w = 0; w < workers; w++) {
+            final int from = (int)(((long)order.length) * w / workers);
+            final int to = (int)(((long)order.length) * (w + 1) / workers);
+            shards.add(new Callable<Object>() {
+                public Object call() {
+                    train(from, to);
+                    return null;
+                }
+            });
+        }
+        try {
+            final List<Future<Object>> done = pool.invokeAll(shards);
+            for (int w = 0; w < done.size(); w++) {
+                done.get(w).get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop();
+            return false;
+        }
+        catch (ExecutionException e) {
+            log.error("CL worker failed", e.getCause());
+            throw new RuntimeException(e.getCause());
+        }
+        return true;
+    }
+    
+    // Shut the workers down when run() returns, at the end or on a stop
+    protected void finished() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    // A worker: move the winner of each input of a shard in the shared positions
+    private void train(final int from, final int to) {
+        final double[][] w = shared;
+        for (int i = from; i < to; i++) {
+            final double[] x = theInputs[order[i]].getPosition();
+            int winner = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < w.length; j++) {
+                final double error = kernel.distance(x, w[j], best);
+                if (error < best) {
+                    best = error;
+                    winner = j;
+                }
+            }
+            if (winner >= 0) {
+                // racing writes to the same unit may lose a move, which Hogwild accepts
+                final double[] unit = w[winner];
+                for (int d = 0; d < unit.length; d++) {
+                    unit[d] += EPSILONB * (x[d] - unit[d]);
+                }
+            }
+        }
+    }
     
 }
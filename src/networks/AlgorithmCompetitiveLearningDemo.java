@@ -64,6 +64,7 @@ public class AlgorithmCompetitiveLearningDemo extends Algorithm {
                 ndatumsMax = _maxNodes_;
                 dataDimension = _dataDim_;
                 norm = _power_;
+                kernel = kernels.distance(norm);
                 epoch = _epoch_;
                 EPSILONB = _epsilonb_;
 
@@ -90,7 +91,7 @@ public class AlgorithmCompetitiveLearningDemo extends Algorithm {
                 }
             }
             // algorithm has an error table
-            errorTable = new ErrorTable();
+            errorTable = new ErrorTable(graph);
         }
 
         protected void initialize() {
@@ -117,29 +118,29 @@ public class AlgorithmCompetitiveLearningDemo extends Algorithm {
         final double[] inputpos = input.getPosition();
         // Generate global error table
         errorTable.clear();
+        double best = Double.POSITIVE_INFINITY;
         for (Iterator e = graph.getAllVertices(); e.hasNext(); ) {
             GNGVertex vertex = ((GNGVertex)e.next());
-            errorTable.addEntry(vertex, GNGVertex.Minkowski(norm, inputpos, vertex.getPosition()));
+            final double error = kernel.distance(inputpos, vertex.getPosition(), best);
+            errorTable.addEntry(vertex, error);
+            if (error < best) {
+                best = error;
+            }
         }
-        // ErrorTable iterator returns an ordered Iterator.  As this is
-        // a WTA algorithm, we simply get the winner, update it and break.
-        for (Iterator e = errorTable.getEntries(); e.hasNext(); ) {
-            bmu = (Vertex)(((Entry)e.next()).getVertex());
+        // As this is a WTA algorithm, we simply select the winner and
+        // update it.
+        if (errorTable.select(1) > 0) {
+            bmu = errorTable.getVertex(0);
 
 
             bmu.setSelected(true);
             iteration.increment();
             delay(clabidelay);
 
-            double[] pws1 = bmu.getPosition();
-            for (int i = 0; i < dataDimension; i++) {
-                pws1[i] = pws1[i] + (EPSILONB * (inputpos[i] - pws1[i]));
-            }
+            adapt(bmu, inputpos, EPSILONB);
 
-            bmu.setPosition(pws1);
             iteration.increment();
             delay(clabmdelay);
-            break;
 
         }
        
@@ -18,6 +18,11 @@ import support.*;
  * @version 1.0
  * @version 1.1 23 November 2007 Added <Generics> to silence compiler 
  *          > 1.5 bitching about unsafes and casts
+ * @version 1.2 The growth and pruning phases are each one batch of Graph changes
+ * @version 1.3 Optional kd-tree search for the best matching unit
+ * @version 1.4 Optional greedy search for the best matching unit along the edges
+ * @version 1.5 Optional BMU cache of the best matching unit of each input
+ * @version 1.6 The scan abandons a unit once it is farther than the best so far
  */
 
 public class AlgorithmGrowingCellStructures extends Algorithm {
@@ -36,6 +41,7 @@ public class AlgorithmGrowingCellStructures extends Algorithm {
     final private boolean error_minimising = false;
     // Growing Neural Gas global number of data Inputs
     private int label = 0;
+    private Winners winners = new Winners(); // the best matching unit, from the index
 
 	private int epoch;
     
@@ -80,6 +86,7 @@ public class AlgorithmGrowingCellStructures extends Algorithm {
             nCellsMax = _maxNodes_;
             dataDim = _dataDim_;
             norm = _power_;
+            kernel = kernels.distance(norm);
             epoch = _epoch_;
             LAMBDA = _nodeInsertion_;
             LAMBDA_PRUNE = _cellDeletion_;
@@ -118,36 +125,44 @@ public class AlgorithmGrowingCellStructures extends Algorithm {
     protected void iterate() {
         // 1.  Choose and input signal xi according to the proability
         //     distribution P(xi)
-        double[] input;
+        Vertex signal;
         if (log.isDebugEnabled()) {
-            input = ((Vertex)dealer.getNextFixed()).getPosition();
+            signal = (Vertex)dealer.getNextFixed();
         } else {
-            input = ((Vertex)dealer.getNext()).getPosition();
+            signal = (Vertex)dealer.getNext();
         }
+        final double[] input = signal.getPosition();
         // 2.  Locate the bets matching unit s = phi_w(xi)
         double S1Value = Double.MAX_VALUE;
         GCSVertex S1 = null;
-        for (Iterator i = graph.getAllVertices(); i.hasNext(); ) {
-            final GCSVertex candidate = (GCSVertex)i.next();
-            final double error = Vertex.Minkowski(norm, input, candidate.getPosition());
-            if (error < S1Value) {
-                S1Value = error;
-                S1 = candidate;
+        if (greedy != null || bmuCache != null || index != null) {
+            if (greedy != null) {
+                greedy.nearest(signal, kernel, index, winners);
+            } else if (bmuCache != null) {
+                bmuCache.nearestOne(signal, graph, winners);
+            } else {
+                index.nearest(input, kernel, winners);
+            }
+            S1Value = winners.getFirstError();
+            S1 = (GCSVertex)winners.getFirst();
+        } else {
+            for (Iterator i = graph.getAllVertices(); i.hasNext(); ) {
+                final GCSVertex candidate = (GCSVertex)i.next();
+                final double error = kernel.distance(input, candidate.getPosition(), S1Value);
+                if (error < S1Value) {
+                    S1Value = error;
+                    S1 = candidate;
+                }
             }
         }
         // 3.  Increse the matching for s and its direct
         //     topological neighbours
         // 3.1  S
-        double[] S1pos = S1.getPosition();
-        for (int d = 0; d < dataDim; d++) {
-            S1pos[d] = S1pos[d] + (EPSILONB * (input[d] - S1pos[d]));
-        }
+        adapt(S1, input, EPSILONB);
         // 3.2  topological neighbours
         for (Iterator j = graph.getNeighbours(S1); j.hasNext(); ) {
-            double[] neigh = ((GCSVertex)j.next()).getPosition();
-            for (int d = 0; d < dataDim; d++) {
-                neigh[d] = neigh[d] + (EPSILONN * (input[d] - neigh[d]));
-            }
+            final GCSVertex neighbour = (GCSVertex)j.next();
+            adapt(neighbour, input, EPSILONN);
         }
         // 4.  Increment the Signal Counter of s
         if (error_minimising) {
@@ -199,7 +214,7 @@ public class AlgorithmGrowingCellStructures extends Algorithm {
             GCSVertex fFurthest = null;
             for (Iterator i = graph.getNeighbours(hqc); i.hasNext(); ) {
                 GCSVertex candidate = (GCSVertex)i.next();
-                double diff = GCSVertex.Minkowski(norm, hqc.getPosition(), candidate.getPosition());
+                double diff = kernel.distance(hqc.getPosition(), candidate.getPosition());
                 if (diff > fDistance) {
                     fDistance = diff;
                     fFurthest = candidate;
@@ -248,40 +263,48 @@ public class AlgorithmGrowingCellStructures extends Algorithm {
             // shared nodes of f and q.
             // The new cell is connected to the other cells in
             // such a way that we have again a structure consisting
-            // of k dimensional simplices
+            // of k dimensional simplices, as one batch of Graph changes
             Vector<GCSSimplex> marked = new Vector<GCSSimplex>();
-            for (Iterator i = shared.iterator(); i.hasNext(); ) {
-                GCSVertex vertex = (GCSVertex)i.next();
-                for (Iterator j = graph.getSimplices(); j.hasNext(); ) {
-                    GCSSimplex s = (GCSSimplex)j.next();
-                    if (s.contains(hqc) && s.contains(fFurthest) && s.contains(vertex)) {
-                        marked.add(s);
+            graph.beginBatch();
+            try {
+                for (Iterator i = shared.iterator(); i.hasNext(); ) {
+                    GCSVertex vertex = (GCSVertex)i.next();
+                    for (Iterator j = graph.getSimplices(); j.hasNext(); ) {
+                        GCSSimplex s = (GCSSimplex)j.next();
+                        if (s.contains(hqc) && s.contains(fFurthest) && s.contains(vertex)) {
+                            marked.add(s);
+                        }
                     }
-                }
-                if (log.isDebugEnabled()) {
-                    System.out.print("\n\nBEGINNING GROWTH PHASE\n");
-                }
-                GCSSimplex sq = new GCSSimplex(hqc, r, vertex);
-                if (log.isDebugEnabled()) {
-                    System.out.print("\n\nGCS request... adding simplex " + sq.toString() + "\n");
-                }
-                graph.add(sq);
-                GCSSimplex sf = new GCSSimplex(fFurthest, r, vertex);
-                if (log.isDebugEnabled()) {
-                    System.out.print("\n\nGCS request... adding simplex " + sf.toString() + "\n");
-                }
-                graph.add(sf);
-                for (Iterator itdel = marked.iterator(); itdel.hasNext(); ) {
-                    GCSSimplex simplex = (GCSSimplex)itdel.next();
                     if (log.isDebugEnabled()) {
-                        System.out.print("\n\nGCS request... removing simplex" + simplex.toString() + "\n");
+                        System.out.print("\n\nBEGINNING GROWTH PHASE\n");
+                    }
+                    GCSSimplex sq = new GCSSimplex(hqc, r, vertex);
+                    if (log.isDebugEnabled()) {
+                        System.out.print("\n\nGCS request... adding simplex " + sq.toString() + "\n");
+                    }
+                    graph.add(sq);
+                    GCSSimplex sf = new GCSSimplex(fFurthest, r, vertex);
+                    if (log.isDebugEnabled()) {
+                        System.out.print("\n\nGCS request... adding simplex " + sf.toString() + "\n");
+                    }
+                    graph.add(sf);
+                    for (Iterator itdel = marked.iterator(); itdel.hasNext(); ) {
+                        GCSSimplex simplex = (GCSSimplex)itdel.next();
+                        if (log.isDebugEnabled()) {
+                            System.out.print("\n\nGCS request... removing simplex" + simplex.toString() + "\n");
+                        }
+                        graph.remove(simplex);
+                    }
+                    if (log.isDebugEnabled()) {
+                        System.out.print("\n\nENDING GROWTH PHASE\n");
                     }
-                    graph.remove(simplex);
-                }
-                if (log.isDebugEnabled()) {
-                    System.out.print("\n\nENDING GROWTH PHASE\n");
                 }
             }
+            finally {
+                graph.commitBatch();
+            }
+            // the growth adds a cell, so index the cells afresh
+            restructured();
             if (log.isDebugEnabled()) {
                 System.out.print("Graph consists of:\n");
                 for (Iterator i = graph.getSimplices(); i.hasNext(); ) {
@@ -328,7 +351,7 @@ public class AlgorithmGrowingCellStructures extends Algorithm {
                 int count = 0;
                 for (Iterator j = graph.getNeighbours(di); j.hasNext(); count++) {
                     GCSVertex dj = (GCSVertex)j.next();
-                    dist += GCSVertex.Minkowski(norm, di.getPosition(), dj.getPosition());
+                    dist += kernel.distance(di.getPosition(), dj.getPosition());
                 }
                 dist /= count;
                 if (dist > distMax) {
@@ -349,13 +372,21 @@ public class AlgorithmGrowingCellStructures extends Algorithm {
                     marked.add(simplex);
                 }
             }
-            // and having been marked for removal, are removed here
-            for (Iterator j = marked.iterator(); j.hasNext(); ) {
-                GCSSimplex simplex = (GCSSimplex)j.next();
-                graph.remove(simplex);
-                if (log.isDebugEnabled())
-                    System.out.print("removed " + simplex.toString() + "\n");
+            // and having been marked for removal, are removed here in one batch
+            graph.beginBatch();
+            try {
+                for (Iterator j = marked.iterator(); j.hasNext(); ) {
+                    GCSSimplex simplex = (GCSSimplex)j.next();
+                    graph.remove(simplex);
+                    if (log.isDebugEnabled())
+                        System.out.print("removed " + simplex.toString() + "\n");
+                }
+            }
+            finally {
+                graph.commitBatch();
             }
+            // the pruning removes cells, so index the cells afresh
+            restructured();
             if (log.isDebugEnabled()) {
                 System.out.print("\n\nENDING PRUNING PHASE\n");
             }
@@ -27,6 +27,13 @@ import structures.*;
  * @version 1.7 10 February 2005 Moved initialisation into init()
  * @version 1.8 23 November 2007 Added <Generics> to silence compiler > 1.5 bitching about unsafes and casts
  * @version 1.9 21 February 2008 Wrapped log file output in DEBUG conditional
+ * @version 2.0 The pruning and growth phases are each one batch of Graph changes
+ * @version 2.1 Optional local pruning, confined to the edges of the winner
+ * @version 2.2 One pass search for the two winners, in place of the error table
+ * @version 2.3 Optional kd-tree search for the two winners
+ * @version 2.4 Optional greedy search for the two winners along the edges
+ * @version 2.5 Optional BMU cache of the two winners of each input
+ * @version 2.6 The scan abandons a unit once it is farther than the second winner
  */
 final public class AlgorithmGrowingNeuralGas extends Algorithm {
     // Growing Neural Gas specific parameters not passed in from the command line
@@ -46,12 +53,20 @@ final public class AlgorithmGrowingNeuralGas extends Algorithm {
     private double EPSILONN; // Neighbours get less
     private int ALPHAMax; // Edge dies at this age
     private int LAMBDA; // Growth at iteration number
-    private ErrorTable errorTable; // local error table
+    private Winners winners; // nearest and second nearest units
     private int label = 0; // Label the vertices of the graph
     
     Vector<Edge> deleteEdges;
     Vector<Vertex> deleteVertices; 
 
+    // Only the edges of the winner age in a step, so only they can pass
+    // ALPHAMax and only their far ends can be left without neighbours.
+    // Local pruning looks just there, which gives the same network as the
+    // global sweep as long as every step prunes.  A step with two vertices
+    // skips the edge pruning, so the next pruning step sweeps the graph.
+    private boolean localPruning = false;
+    private boolean sweepPending = true;
+
     Graph  graph = new Graph();
     public Graph getGraph() {
         return graph;
@@ -61,6 +76,20 @@ final public class AlgorithmGrowingNeuralGas extends Algorithm {
       return theInputs;
     }
 
+    /**
+     * Age and prune only the edges of the winner, and remove only the
+     * vertices that pruning leaves without neighbours, rather than sweeping
+     * every edge and vertex each step.  The network is the same either way,
+     * but lone vertices may be removed in another order, so the dense numbers
+     * of Graph.indexOf() they free are handed out again in another order.
+     * Off unless set.
+     * @param state true to prune locally, false to sweep the graph
+     */
+    public void setLocalPruning(boolean state) {
+      localPruning = state;
+      sweepPending = true;
+    }
+
     /**
      * @param _data_ The data to be classified
      * @param _maxNodes_ The maximum size of the network
@@ -88,6 +117,7 @@ final public class AlgorithmGrowingNeuralGas extends Algorithm {
             ndatumsMax = _maxNodes_;
             dataDimension = _dataDim_;
             norm = _power_;
+            kernel = kernels.distance(norm);
             epoch = _epoch_;
             ALPHAMax = _edgeDeletion_;
             LAMBDA = _nodeInsertion_;
@@ -116,8 +146,8 @@ final public class AlgorithmGrowingNeuralGas extends Algorithm {
         graph.addVertex(v1);
         graph.addVertex(v2);
         graph.addEdge(new GNGEdge(v1, v2));
-        // algorithm has an error table
-        errorTable = new ErrorTable();
+        // algorithm finds two winners a step
+        winners = new Winners();
     }
 
     protected void initialize() {
@@ -149,30 +179,26 @@ final public class AlgorithmGrowingNeuralGas extends Algorithm {
           final double[] inputpos = input.getPosition();
           // Step 2. Find the nearest unit S1 and the second
           //         nearest unit S2
-          // Generate global error table
-          errorTable.clear();
-          for (Iterator e = graph.getAllVertices(); e.hasNext(); ) {
-            GNGVertex vertex = ((GNGVertex)e.next());
-            errorTable.addEntry(vertex, GNGVertex.Minkowski(norm, input.getPosition(), vertex.getPosition()));
+          // in one pass, keeping units at equal distances
+          if (greedy != null) {
+            greedy.nearest(input, kernel, index, winners);
+          } else if (bmuCache != null) {
+            bmuCache.nearest(input, graph, winners);
+          } else if (index != null) {
+            index.nearest(inputpos, kernel, winners);
+          } else {
+            winners.clear();
+            for (Iterator e = graph.getAllVertices(); e.hasNext(); ) {
+              Vertex vertex = (Vertex)e.next();
+              winners.offer(vertex, kernel.distance(inputpos, vertex.getPosition(), winners.getSecondError()));
+            }
           }
           // Determine the winner S1
-          GNGVertex ws1 = null; // Winning Node
+          GNGVertex ws1 = (GNGVertex)winners.getFirst(); // Winning Node
           // Determine second nearest unit S2
-          GNGVertex ws2 = null; // Second Node
-          int loopcount = 1;
-          for (Iterator e = errorTable.getEntries(); e.hasNext(); ) {
-            Entry entry = (Entry)e.next();
-            if (loopcount == 1) {
-               ws1 = (GNGVertex)entry.getVertex();
-            } else if (loopcount == 2) {
-               ws2 = (GNGVertex)entry.getVertex();
-            } else {
-               continue;
-            }
-            loopcount++;
-          }
+          GNGVertex ws2 = (GNGVertex)winners.getSecond(); // Second Node
           // Step 4. Set error of S1
-          ws1.setError(ws1.getError() + (errorTable.getError(ws1) * errorTable.getError(ws1)));
+          ws1.setError(ws1.getError() + (winners.getFirstError() * winners.getFirstError()));
           if (ws1 == null) {
               log.error("GNG: Unable to determine a winner\n");
               System.exit(-2);
@@ -195,21 +221,13 @@ final public class AlgorithmGrowingNeuralGas extends Algorithm {
 
           // Step 5.
           // Adapt the reference vector of the winner
-          double[] pws1 = ws1.getPosition();
-          for (int i = 0; i < dataDimension; i++) {
-              pws1[i] = pws1[i] + (EPSILONB * (inputpos[i] - pws1[i]));
-          }
-          ws1.setPosition(pws1);
+          adapt(ws1, inputpos, EPSILONB);
           // Adapt the reference vector of the neighbourhood
           Iterator S1_neighbours = graph.getNeighbours(ws1);
           if (S1_neighbours != null) {
             for ( ; S1_neighbours.hasNext(); ) {
               GNGVertex vertex = (GNGVertex)S1_neighbours.next();
-              double[] vlen = vertex.getPosition();
-              for (int i = 0; i < dataDimension; i++) {
-                vlen[i] = vlen[i] + (EPSILONN * (inputpos[i] - vlen[i]));
-              }
-              vertex.setPosition(vlen);
+              adapt(vertex, inputpos, EPSILONN);
             }
           }
 
@@ -223,31 +241,45 @@ final public class AlgorithmGrowingNeuralGas extends Algorithm {
             graph.addEdge(new GNGEdge(ws1, ws2));
           }
 
-          // Step 7. Remove all edges with age greater than ALPHAMax
-          if (graph.numVertices() > 2) {
-            deleteEdges.removeAllElements();
-            for (Iterator e = graph.getAllEdges(); e.hasNext(); ) {
-              GNGEdge edge = (GNGEdge)e.next();
-              if (edge.getAge() > ALPHAMax) {
-                deleteEdges.add(edge);
+          // Step 7 and the removal of lone vertices are one batch of changes
+          graph.beginBatch();
+          try {
+            if (localPruning && !sweepPending) {
+              pruneWinner(ws1);
+            } else {
+              // Step 7. Remove all edges with age greater than ALPHAMax
+              if (graph.numVertices() > 2) {
+                deleteEdges.removeAllElements();
+                for (Iterator e = graph.getAllEdges(); e.hasNext(); ) {
+                  GNGEdge edge = (GNGEdge)e.next();
+                  if (edge.getAge() > ALPHAMax) {
+                    deleteEdges.add(edge);
+                  }
+                }
+                for (Iterator i = deleteEdges.iterator(); i.hasNext(); ) {
+                  GNGEdge e = (GNGEdge)i.next();
+                  graph.deleteEdge(e);
+                }
               }
-            }
-            for (Iterator i = deleteEdges.iterator(); i.hasNext(); ) {
-              GNGEdge e = (GNGEdge)i.next();
-              graph.deleteEdge(e);
-            }
-          }
-          // Remove vertices from the graph if they have no neighbours
-          deleteVertices.removeAllElements();
-          for (Iterator e = graph.getAllVertices(); e.hasNext(); ) {
-            final GNGVertex vertex = (GNGVertex)e.next();
-            if (graph.degree(vertex) == 0) {
-              deleteVertices.add(vertex);
+              // Remove vertices from the graph if they have no neighbours
+              deleteVertices.removeAllElements();
+              for (Iterator e = graph.getAllVertices(); e.hasNext(); ) {
+                final GNGVertex vertex = (GNGVertex)e.next();
+                if (graph.degree(vertex) == 0) {
+                  deleteVertices.add(vertex);
+                }
+              }
+              for (Iterator i = deleteVertices.iterator(); i.hasNext(); ) {
+                GNGVertex v = (GNGVertex)i.next();
+                graph.deleteVertex(v);
+                removed(v);
+              }
+              // a sweep leaves no edge older than ALPHAMax anywhere
+              sweepPending = (graph.numVertices() <= 2);
             }
           }
-          for (Iterator i = deleteVertices.iterator(); i.hasNext(); ) {
-            GNGVertex v = (GNGVertex)i.next();
-            graph.deleteVertex(v);
+          finally {
+            graph.commitBatch();
           }
           if (graph.numVertices() < ndatumsMax) {
               // Step 8. If the number of input signals generated so far is
@@ -321,11 +353,18 @@ final public class AlgorithmGrowingNeuralGas extends Algorithm {
                           r.setError((auError + buError) / 2.0d);
                       }
                       // and insert edges between q and f, and the new vertex r
-                      // Add new vertex r to the graph
-                      graph.addVertex(r);
-                      graph.addEdge(new GNGEdge(q, r));
-                      graph.addEdge(new GNGEdge(r, f));
-                      graph.deleteEdge(graph.connection(f, q));
+                      // Add new vertex r to the graph, as one batch of changes
+                      graph.beginBatch();
+                      try {
+                        graph.addVertex(r);
+                        graph.addEdge(new GNGEdge(q, r));
+                        graph.addEdge(new GNGEdge(r, f));
+                        graph.deleteEdge(graph.connection(f, q));
+                      }
+                      finally {
+                        graph.commitBatch();
+                      }
+                      inserted(r);
                   } else {
                       System.err.print("AlgorithmGrowingNeuralGas: f or q is null");
                       System.exit(-2);
@@ -340,4 +379,46 @@ final public class AlgorithmGrowingNeuralGas extends Algorithm {
           }
     }
     
+
+    /**
+     * Step 7 for the edges of the winner alone, then removal of any of its
+     * neighbours left without an edge.  The edges go in graph order, as in
+     * the sweep, since the incidence list keeps the order edges were added.
+     * @param ws1 GNGVertex the winner
+     */
+    final private void pruneWinner(GNGVertex ws1) {
+        // Step 7. Remove the edges of the winner with age greater than ALPHAMax
+        if (graph.numVertices() > 2) {
+          deleteEdges.removeAllElements();
+          for (Iterator<Edge> e = graph.getIncidentEdges(ws1); e.hasNext(); ) {
+            GNGEdge edge = (GNGEdge)e.next();
+            if (edge.getAge() > ALPHAMax) {
+              deleteEdges.add(edge);
+            }
+          }
+          for (Iterator<Edge> i = deleteEdges.iterator(); i.hasNext(); ) {
+            graph.deleteEdge(i.next());
+          }
+        } else {
+          sweepPending = true;
+          return;
+        }
+        // Remove vertices from the graph if they have no neighbours.  Only
+        // the ends of the deleted edges can have lost their last one.
+        deleteVertices.removeAllElements();
+        if (!deleteEdges.isEmpty() && graph.degree(ws1) == 0) {
+          deleteVertices.add(ws1);
+        }
+        for (Iterator<Edge> i = deleteEdges.iterator(); i.hasNext(); ) {
+          final Vertex vertex = i.next().otherEnd(ws1);
+          if (graph.hasVertex(vertex) && graph.degree(vertex) == 0 && !deleteVertices.contains(vertex)) {
+            deleteVertices.add(vertex);
+          }
+        }
+        for (Iterator<Vertex> i = deleteVertices.iterator(); i.hasNext(); ) {
+          final Vertex vertex = i.next();
+          graph.deleteVertex(vertex);
+          removed(vertex);
+        }
+    }
 }
@@ -22,6 +22,10 @@ import structures.*;
  * registered observers on a change to the graph.
  * @version 1.6 04 January 2005 Removed a large amount of runtime error checking to speed things up
  * @version 1.7 10 February 2005 Moved initialisation into init()
+ * @version 1.8 Optional truncated ranking, adapting only the units that
+ * exp(-k/lambda) leaves above a tolerance
+ * @version 1.9 Units at equal distances are all ranked and adapted
+ * @version 2.0 The truncated ranking abandons a unit once it is farther than the K'th
  */
 final public class AlgorithmNeuralGas extends Algorithm {
     // internal parameters passed in from main to launch GNG
@@ -37,6 +41,8 @@ final public class AlgorithmNeuralGas extends Algorithm {
 
     private int T_MAX;
     private ErrorTable errorTable; // local error table
+    private NearestUnits nearest; // the K nearest units, for truncated ranking
+    private double rankTolerance = 0.0d; // smallest neighbourhood factor adapted, 0 for all
     private int label = 0; // Label the vertices of the graph
 
     Graph  graph = new Graph();
@@ -76,6 +82,7 @@ final public class AlgorithmNeuralGas extends Algorithm {
         ndatumsMax = _maxNodes_;
         dataDimension = _dataDim_;
         norm = _power_;
+        kernel = kernels.distance(norm);
         epoch = _epoch_;
 
         li = _neighbourhood_initial_;
@@ -100,7 +107,8 @@ final public class AlgorithmNeuralGas extends Algorithm {
             }
         }
         // algorithm has an error table
-        errorTable = new ErrorTable();
+        errorTable = new ErrorTable(graph);
+        nearest = new NearestUnits();
         // Total number of iterations
         T_MAX = theInputs.length * epoch;
     }
@@ -109,6 +117,31 @@ final public class AlgorithmNeuralGas extends Algorithm {
     	
     }
 
+    /**
+     * Adapt only the units of rank k whose neighbourhood factor exp(-k/lambda)
+     * is at least the tolerance, rather than every unit.  The K nearest units
+     * are found with a bounded heap, at O(n log K) a step instead of sorting
+     * all n.
+     * @param tolerance double in (0, 1), or 0 to adapt every unit
+     */
+    public void setRankTolerance(double tolerance) {
+        if (tolerance < 0.0d || tolerance >= 1.0d) {
+            System.err.print("NG: rank tolerance must be in [0, 1): " + tolerance + "\n");
+            throw new IllegalArgumentException("rank tolerance " + tolerance);
+        }
+        rankTolerance = tolerance;
+    }
+
+    public double getRankTolerance() {
+        return rankTolerance;
+    }
+
+    // The number of ranks k from 0 with exp(-k/lt) >= rankTolerance
+    private int ranks(double lt) {
+        double k = Math.floor(lt * Math.log(1.0d / rankTolerance)) + 1.0d;
+        return (k < graph.numVertices()) ? (int)k : graph.numVertices();
+    }
+
     protected void iterate() {
     	 double et;
          double ethl;
@@ -126,21 +159,31 @@ final public class AlgorithmNeuralGas extends Algorithm {
              input = (Vertex)dealer.getNext();
          }
          final double[] inputpos = input.getPosition();
+         if (rankTolerance > 0.0d) {
+             // Only the K nearest units move far enough to matter
+             nearest.clear(ranks(lt));
+             for (Iterator e = graph.getAllVertices(); e.hasNext(); ) {
+                 Vertex vertex = (Vertex)e.next();
+                 nearest.offer(vertex, kernel.distance(inputpos, vertex.getPosition(), nearest.getLimit()));
+             }
+             int size = nearest.sort();
+             for (int num = 0; num < size; num++) {
+                 ethl = Math.exp(-num / lt) * et;
+                 adapt(nearest.getVertex(num), inputpos, ethl);
+             }
+             return;
+         }
          // Generate global error table
          errorTable.clear();
          for (Iterator e = graph.getAllVertices(); e.hasNext(); ) {
              GNGVertex vertex = ((GNGVertex)e.next());
-             errorTable.addEntry(vertex, GNGVertex.Minkowski(norm, inputpos, vertex.getPosition()));
+             errorTable.addEntry(vertex, kernel.distance(inputpos, vertex.getPosition()));
          }
-         int num = 0;
-         for (Iterator e = errorTable.getEntries(); e.hasNext(); num++) {
-             Vertex vertex = (Vertex)(((Entry)e.next()).getVertex());
+         int size = errorTable.sort();
+         for (int num = 0; num < size; num++) {
+             Vertex vertex = errorTable.getVertex(num);
              ethl = Math.exp(-num / lt) * et;
-             double[] pws1 = vertex.getPosition();
-             for (int i = 0; i < dataDimension; i++) {
-                 pws1[i] = pws1[i] + (ethl * (inputpos[i] - pws1[i]));
-             }
-             vertex.setPosition(pws1);
+             adapt(vertex, inputpos, ethl);
          }
 
     }
@@ -16,6 +16,7 @@ import structures.*;
  *
  * @author Kevin Doherty (K.A.J.Doherty@herts.ac.uk)
  * @version 1.0
+ * @version 1.1 The BMU scan abandons a unit once it is farther than the best so far
  */
 
 public class AlgorithmSOM extends Algorithm {
@@ -57,6 +58,7 @@ public class AlgorithmSOM extends Algorithm {
         theInputs = _data_;
         dataDimension = _dataDim_;
         norm = _power_;
+        kernel = kernels.distance(norm);
         epoch = _epoch_;
         nRows = _rows_;
         nColumns = _columns_;
@@ -146,7 +148,7 @@ public class AlgorithmSOM extends Algorithm {
        SOMVertex bmu= null;
        for (Iterator e = graph.getAllVertices(); e.hasNext(); ) {
            SOMVertex vertex = ((SOMVertex)e.next());
-           double error = Vertex.Minkowski(norm, inputpos, vertex.getPosition());
+           double error = kernel.distance(inputpos, vertex.getPosition(), minerror);
            if (error < minerror) {
              minerror = error;
              bmu = vertex;
@@ -176,10 +178,7 @@ public class AlgorithmSOM extends Algorithm {
          for (int c = 0; c < nColumns; c++) {
            double d = Math.abs(bmuRow-r)+Math.abs(bmuColumn-c);
            double hrs = Math.exp( -(d * d) / ltlt2 );
-           double [] pos = theSOM[r][c].getPosition();
-           for (int i = 0; i < dataDimension; i++){
-             pos[i] += et * hrs * (inputpos[i] - pos[i]);
-           }
+           adapt(theSOM[r][c], inputpos, et * hrs);
          }
        }
    }
@@ -0,0 +1,234 @@
+package networks;
+
+import java.util.*;
+import structures.*;
+
+/**
+ *
+ * <p>Title: Competitive Learning</p>
+ *
+ * <p>Description: The last best and second best matching units of each
+ * input, kept so a search can often be skipped.  The Dealer hands out the
+ * same inputs every epoch, and late in training the units barely move.</p>
+ *
+ * <p>With each input are kept its two winners, and the distances to the
+ * second and third nearest units, and the latest PrototypeDrift checkpoint,
+ * at the time of the search.  No unit has moved further since than the
+ * bound of that checkpoint, so by the triangle inequality every unit other
+ * than the winners is still at least the old third distance less the bound
+ * away.  When the winners
+ * measured afresh are nearer than that, they are still the winners, and only
+ * they have been measured.  Otherwise the units are all measured, and the
+ * input is kept again.</p>
+ *
+ * <p>Ties are broken as a search breaks them only when the search is made.
+ * A cache is for one thread, and holds one entry per input.</p>
+ *
+ * @version 1.0
+ */
+
+public class BmuCache {
+    /** Rounding allowance on the bounds, relative to their size */
+    private static final double SLACK = 1.0e-9;
+
+    /** How far the units have moved */
+    private final PrototypeDrift drift;
+
+    /** The distance the winners are ranked by */
+    private final DistanceKernel kernel;
+
+    /** The winners of each input */
+    private HashMap<Vertex, Entry> entries = new HashMap<Vertex, Entry>();
+
+    /** Counters */
+    private long hits = 0;
+    private long searches = 0;
+
+    /**
+     * A cache of the winners of each input
+     * @param drift PrototypeDrift the drift of the units
+     * @param kernel DistanceKernel the distance to rank by, of power 1 or more
+     */
+    public BmuCache(final PrototypeDrift drift, final DistanceKernel kernel) {
+        this.drift = drift;
+        this.kernel = kernel;
+    }
+
+    /**
+     * Find the two nearest units of the Graph to an input
+     * @param input Vertex
+     * @param graph Graph the units
+     * @param winners Winners cleared, then given the winners
+     */
+    public void nearest(final Vertex input, final Graph graph, final Winners winners) {
+        if (!cached(input, null, true, winners)) {
+            search(input, graph.getAllVertices(), winners);
+        }
+    }
+
+    /**
+     * Find the two nearest of the units of a snapshot to an input
+     * @param input Vertex
+     * @param units GraphSnapshot the units
+     * @param winners Winners cleared, then given the winners
+     */
+    public void nearest(final Vertex input, final GraphSnapshot units, final Winners winners) {
+        if (!cached(input, units, true, winners)) {
+            search(input, new SnapshotIterator(units), winners);
+        }
+    }
+
+    /**
+     * Find the nearest unit of the Graph to an input, which needs one
+     * distance rather than two when the cache holds
+     * @param input Vertex
+     * @param graph Graph the units
+     * @param winners Winners cleared, then given the winner, and the second
+     * winner if it had to search
+     */
+    public void nearestOne(final Vertex input, final Graph graph, final Winners winners) {
+        if (!cached(input, null, false, winners)) {
+            search(input, graph.getAllVertices(), winners);
+        }
+    }
+
+    /**
+     * Find the nearest of the units of a snapshot to an input
+     * @param input Vertex
+     * @param units GraphSnapshot the units
+     * @param winners Winners cleared, then given the winner, and the second
+     * winner if it had to search
+     */
+    public void nearestOne(final Vertex input, final GraphSnapshot units, final Winners winners) {
+        if (!cached(input, units, false, winners)) {
+            search(input, new SnapshotIterator(units), winners);
+        }
+    }
+
+    /**
+     * The share of searches the cache answered
+     * @return double
+     */
+    public double getHitRate() {
+        return (searches == 0) ? Double.NaN : ((double)hits) / searches;
+    }
+
+    /**
+     * toString() overrides the Object method
+     * @return String
+     */
+    public String toString() {
+        return "BMU cache: " + hits + " of " + searches + " searches skipped (" + getHitRate() + ")";
+    }
+
+    // private - no javadoc
+    // Answer from the cache if the bound proves the kept winners still win
+    private boolean cached(final Vertex input, final GraphSnapshot units,
+                           final boolean both, final Winners winners) {
+        searches++;
+        final Entry entry = entries.get(input);
+        if (entry == null || entry.generation != drift.getGeneration()) {
+            return false;
+        }
+        if (units != null && (units.indexOf(entry.firstUnit) < 0 || units.indexOf(entry.secondUnit) < 0)) {
+            return false;
+        }
+        final double[] position = input.getPosition();
+        final double moved = drift.bound(entry.checkpoint, kernel.getPower(), position.length);
+        if (moved == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+        final double e1 = kernel.distance(position, entry.firstUnit.getPosition());
+        final double n1 = PrototypeDrift.norm(kernel, e1);
+        if (!both) {
+            // the second and all the rest are at least the old second distance less the drift
+            if (n1 * (1.0d + SLACK) < entry.secondDistance - moved) {
+                hits++;
+                winners.clear();
+                winners.offer(entry.firstUnit, e1);
+                return true;
+            }
+            return false;
+        }
+        // all but the two winners are at least the old third distance less the drift
+        final double e2 = kernel.distance(position, entry.secondUnit.getPosition());
+        final double n2 = PrototypeDrift.norm(kernel, e2);
+        if (Math.max(n1, n2) * (1.0d + SLACK) < entry.thirdDistance - moved) {
+            hits++;
+            winners.clear();
+            winners.offer(entry.firstUnit, e1);
+            winners.offer(entry.secondUnit, e2);
+            return true;
+        }
+        return false;
+    }
+
+    // private - no javadoc
+    // Measure every unit, keeping the three nearest, and remember the input
+    private void search(final Vertex input, final Iterator<Vertex> units, final Winners winners) {
+        final double[] position = input.getPosition();
+        final long checkpoint = drift.getCheckpoint();
+        double thirdError = Double.POSITIVE_INFINITY;
+        winners.clear();
+        while (units.hasNext()) {
+            final Vertex unit = units.next();
+            final double error = kernel.distance(position, unit.getPosition(), thirdError);
+            // the third nearest is whatever is pushed out of, or misses, the winners
+            if (winners.getSecond() == null || error < winners.getSecondError()) {
+                if (winners.getSecond() != null) {
+                    thirdError = winners.getSecondError();
+                }
+            } else if (error < thirdError) {
+                thirdError = error;
+            }
+            winners.offer(unit, error);
+        }
+        if (winners.getSecond() == null) {
+            entries.remove(input);
+            return;
+        }
+        Entry entry = entries.get(input);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(input, entry);
+        }
+        entry.firstUnit = winners.getFirst();
+        entry.secondUnit = winners.getSecond();
+        entry.secondDistance = PrototypeDrift.norm(kernel, winners.getSecondError());
+        entry.thirdDistance = PrototypeDrift.norm(kernel, thirdError);
+        entry.checkpoint = checkpoint;
+        entry.generation = drift.getGeneration();
+    }
+
+    /** The winners of one input at the time of its last search */
+    private static final class Entry {
+        Vertex firstUnit;
+        Vertex secondUnit;
+        double secondDistance;
+        double thirdDistance;
+        long checkpoint;
+        int generation;
+    }
+
+    /** The vertices of a snapshot */
+    private static final class SnapshotIterator implements Iterator<Vertex> {
+        private final GraphSnapshot units;
+        private int next = 0;
+
+        SnapshotIterator(final GraphSnapshot units) {
+            this.units = units;
+        }
+
+        public boolean hasNext() {
+            return next < units.numVertices();
+        }
+
+        public Vertex next() {
+            return units.getVertex(next++);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -7,7 +7,15 @@ import structures.*;
  *
  * <p>Title: Competitive Learning</p>
  *
- * <p>Description: An error table - essentially a hashmap of vertex and errors</p>
+ * <p>Description: An error table - the error of each vertex of a Graph, held
+ * in primitive arrays.  A vertex is found by its dense number in the Graph, so
+ * getError() and setError() take constant time.  The table ranks the entries
+ * only when asked, fully with sort() or the nearest few with select(), and
+ * then hands them out by rank with getVertex() and getError(int).</p>
+ *
+ * <p>Entries with equal errors are all kept, and rank in the order they were
+ * added.  The arrays only grow, so clear() and refill the same table on every
+ * iteration without allocating.</p>
  *
  * <p>Copyright: Copyright (c) 2005</p>
  *
@@ -15,20 +23,48 @@ import structures.*;
  *
  * @author Kevin Doherty (K.A.J.Doherty@herts.ac.uk)
  * @version 1.0
+ * @version 1.1 Primitive arrays indexed by vertex number, in place of a
+ * TreeSet of Entry objects
  */
 
 public class ErrorTable {
-    /** Storage for the error Entry objects */
-    private TreeSet<Entry> errors;
+    /** The Graph whose vertices are entered */
+    private final Graph graph;
+
+    /** The entries, in the order they were added */
+    private Vertex[] vertices = new Vertex[0];
+    private double[] errors = new double[0];
+    private int[] numbers = new int[0];
+
+    /** The entry of each vertex number, -1 for none */
+    private int[] entryOf = new int[0];
+
+    /** The entries in rank order, for the first ranked of them */
+    private int[] rank = new int[0];
+    private int ranked = 0;
 
-    /** No parameter constructor */
-    public ErrorTable() {
-        errors = new TreeSet<Entry>();
+    /** Merge sort work space */
+    private int[] scratch = new int[0];
+
+    /** The number of entries */
+    private int size = 0;
+
+    /**
+     * An error table for the vertices of a Graph
+     * @param graph Graph
+     */
+    public ErrorTable(final Graph graph) {
+        this.graph = graph;
     }
 
-    /** remove all the entries from the error entry storage */
+    /** remove all the entries */
     public void clear() {
-        errors.clear();
+        for (int i = 0; i < size; i++) {
+            entryOf[numbers[i]] = -1;
+            vertices[i] = null;
+        }
+        size = 0;
+        ranked = 0;
     }
 
     /**
@@ -36,58 +72,73 @@ public class ErrorTable {
      * @return int Returns the number of entries in this ErrorTable
      */
     public int size() {
-        return errors.size();
-    }
-
-    /**
-     * Get an Comparator of the entries in this ErrorTable
-     * @return Iterator Returns an Enumeration of the entries in this ErrorTable
-     */
-    public Iterator<Entry> getEntries() {
-        return errors.iterator();
+        return size;
     }
 
     /**
      * Adds an Vertex/error pair entry to this ErrorTable
      * @param vertex Vertex
      * @param error double
-     * @return boolean The success of the addidtion to this ErrorTable
+     * @return boolean false if the vertex is not in the Graph or already has an entry
      */
-    public boolean addEntry(Vertex vertex, double error) {
-        Entry entry = new Entry(vertex, error);
-        return errors.add(entry);
+    public boolean addEntry(final Vertex vertex, final double error) {
+        final int number = graph.indexOf(vertex);
+        if (number < 0) {
+            return false;
+        }
+        if (number >= entryOf.length) {
+            final int[] grown = new int[Math.max(number + 1, graph.indexBound())];
+            Arrays.fill(grown, -1);
+            System.arraycopy(entryOf, 0, grown, 0, entryOf.length);
+            entryOf = grown;
+        }
+        if (entryOf[number] >= 0) {
+            return false;
+        }
+        if (size == vertices.length) {
+            grow(Math.max(size * 2, graph.numVertices()));
+        }
+        vertices[size] = vertex;
+        errors[size] = error;
+        numbers[size] = number;
+        entryOf[number] = size;
+        size++;
+        ranked = 0;
+        return true;
     }
 
     /**
-     * Remove an entry from this ErrorTable based on the Vertex identifier
+     * Remove the entry of a Vertex.  The last entry takes its place in the
+     * order of addition.
      * @param vertex Vertex
      * @return boolean Returns the status of the attempted remove
      */
-    public boolean removeEntry(Vertex vertex) {
-        for (Iterator<Entry> i = errors.iterator(); i.hasNext(); ) {
-            Entry e = (Entry)i.next();
-            if (e.containsVertex(vertex)) return errors.remove(vertex);
+    public boolean removeEntry(final Vertex vertex) {
+        final int i = entry(vertex);
+        if (i < 0) {
+            return false;
+        }
+        entryOf[numbers[i]] = -1;
+        size--;
+        if (i < size) {
+            vertices[i] = vertices[size];
+            errors[i] = errors[size];
+            numbers[i] = numbers[size];
+            entryOf[numbers[i]] = i;
         }
-        return false;
+        vertices[size] = null;
+        ranked = 0;
+        return true;
     }
 
     /**
      * Get the error associated with the Vertex from this ErrorTable
      * @param vertex Vertex
-     * @return double The error associated with the Vertex
+     * @return double The error associated with the Vertex, NaN if it has no entry
      */
-    final public double getError(Vertex vertex) {
-        double error = Double.NaN;
-        for (Iterator<Entry> i = errors.iterator(); i.hasNext(); ) {
-            Entry entry = (Entry)i.next();
-            if (entry.containsVertex(vertex)) {
-                error = entry.getError();
-            }
-            else {
-                new Exception("getError(vertex) Vertex not found");
-            }
-        }
-        return error;
+    final public double getError(final Vertex vertex) {
+        final int i = entry(vertex);
+        return (i < 0) ? Double.NaN : errors[i];
     }
 
     /**
@@ -95,14 +146,161 @@ public class ErrorTable {
      * @param vertex Vertex
      * @param error double
      */
-    final public void setError(Vertex vertex, double error) {
-        for (Iterator<Entry> i = errors.iterator(); i.hasNext(); ) {
-            Entry entry = (Entry)i.next();
-            if (entry.containsVertex(vertex)) {
-                entry.setError(error);
+    final public void setError(final Vertex vertex, final double error) {
+        final int i = entry(vertex);
+        if (i >= 0) {
+            errors[i] = error;
+            ranked = 0;
+        }
+    }
+
+    /**
+     * Rank every entry, least error first
+     * @return int the number of entries ranked
+     */
+    public int sort() {
+        if (ranked < size) {
+            resetRank();
+            mergeSort(0, size);
+            ranked = size;
+        }
+        return size;
+    }
+
+    /**
+     * Rank the k entries of least error, least error first, without ordering
+     * the rest.  This takes O(n + k log k) rather than the O(n log n) of sort().
+     * @param k int the number of entries wanted
+     * @return int the number of entries ranked, k or size() if less
+     */
+    public int select(final int k) {
+        final int wanted = Math.min(k, size);
+        if (ranked < wanted) {
+            resetRank();
+            if (wanted < size) {
+                quickSelect(wanted);
             }
-            else {
-                new Exception("setError(vertex) Vertex not found");
+            mergeSort(0, wanted);
+            ranked = wanted;
+        }
+        return wanted;
+    }
+
+    /**
+     * Get the Vertex of a rank, after sort() or select()
+     * @param r int rank from 0, the least error
+     * @return Vertex
+     */
+    final public Vertex getVertex(final int r) {
+        return vertices[rank[r]];
+    }
+
+    /**
+     * Get the error of a rank, after sort() or select()
+     * @param r int rank from 0, the least error
+     * @return double
+     */
+    final public double getError(final int r) {
+        return errors[rank[r]];
+    }
+
+    // private - no javadoc
+    private int entry(final Vertex vertex) {
+        final int number = graph.indexOf(vertex);
+        return (number < 0 || number >= entryOf.length) ? -1 : entryOf[number];
+    }
+
+    // private - no javadoc
+    private void grow(final int capacity) {
+        final int length = Math.max(capacity, 2);
+        vertices = Arrays.copyOf(vertices, length);
+        errors = Arrays.copyOf(errors, length);
+        numbers = Arrays.copyOf(numbers, length);
+        rank = new int[length];
+        scratch = new int[length];
+    }
+
+    // private - no javadoc
+    private void resetRank() {
+        for (int i = 0; i < size; i++) {
+            rank[i] = i;
+        }
+    }
+
+    // private - no javadoc
+    // Entry a ranks before entry b: less error, or equal error and added first
+    private boolean before(final int a, final int b) {
+        final int c = Double.compare(errors[a], errors[b]);
+        return c < 0 || (c == 0 && a < b);
+    }
+
+    // private - no javadoc
+    // Bring the k entries of least error to the front of the ranks, in any order
+    private void quickSelect(final int k) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo < hi) {
+            // median of three pivot
+            final int mid = (lo + hi) >>> 1;
+            if (before(rank[mid], rank[lo])) swap(mid, lo);
+            if (before(rank[hi], rank[lo])) swap(hi, lo);
+            if (before(rank[hi], rank[mid])) swap(hi, mid);
+            final int pivot = rank[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (before(rank[i], pivot)) i++;
+                while (before(pivot, rank[j])) j--;
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k - 1 <= j) {
+                hi = j;
+            } else if (k - 1 >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // private - no javadoc
+    private void swap(final int i, final int j) {
+        final int t = rank[i];
+        rank[i] = rank[j];
+        rank[j] = t;
+    }
+
+    // private - no javadoc
+    // Sort rank[from..to) by before()
+    private void mergeSort(final int from, final int to) {
+        if (to - from < 8) {
+            for (int i = from + 1; i < to; i++) {
+                final int r = rank[i];
+                int j = i - 1;
+                while (j >= from && before(r, rank[j])) {
+                    rank[j + 1] = rank[j];
+                    j--;
+                }
+                rank[j + 1] = r;
+            }
+            return;
+        }
+        final int mid = (from + to) >>> 1;
+        mergeSort(from, mid);
+        mergeSort(mid, to);
+        if (!before(rank[mid], rank[mid - 1])) {
+            return;
+        }
+        System.arraycopy(rank, from, scratch, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && !before(scratch[j], scratch[i]))) {
+                rank[k] = scratch[i++];
+            } else {
+                rank[k] = scratch[j++];
             }
         }
     }
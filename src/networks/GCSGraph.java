@@ -16,6 +16,7 @@ import structures.*;
  * @author Kevin Doherty (K.A.J.Doherty@herts.ac.uk)
  * @version 1.0
  * @version 1.1 23 November 2007 Added <Generics> to silence compiler > 1.5 bitching about unsafes and casts
+ * @version 1.2 Adding or removing a simplex is one batch of Graph changes
  */
 
 public class GCSGraph extends Graph {
@@ -40,43 +41,49 @@ public class GCSGraph extends Graph {
      * @param s GCSSimplex
      */
     public void add(GCSSimplex s) {
-        simplices.add(s);
-        if (log.isDebugEnabled()) {
-            System.out.print("\n\nAdding Simplex(" + s.toString() + ")\n");
-        }
-        // Extract the vertices from the simplex and add to this graph
-        GCSVertex[] verts = s.getVertices();
-        int index = 0;
-        for (int i = 0; i < verts.length; i++) {
-            GCSVertex vertex = verts[i];
-            if (!this.verts_.contains(vertex)) {
-                if (log.isDebugEnabled()) {
-                    System.out.print(" inserted " + vertex.toString() + "\n");
-                }
-                this.addVertex(vertex);
-            } else {
-                if (log.isDebugEnabled()) {
-                    System.out.print(" insertion failed " + vertex.toString() + "\n");
-                }
+        beginBatch();
+        try {
+            simplices.add(s);
+            if (log.isDebugEnabled()) {
+                System.out.print("\n\nAdding Simplex(" + s.toString() + ")\n");
             }
-        }
-        // Now look for the edges between the vertices of the simplex.
-        // If it does not exist in this graph then create the edge.
-        for (int i = 0; i < s.getDimension() - 1; i++) {
-            for (int j = i + 1; j < s.getDimension(); j++) {
-                if (!this.areConnected(verts[i], verts[j])) {
-                    GCSEdge edge = new GCSEdge(verts[i], verts[j]);
+            // Extract the vertices from the simplex and add to this graph
+            GCSVertex[] verts = s.getVertices();
+            int index = 0;
+            for (int i = 0; i < verts.length; i++) {
+                GCSVertex vertex = verts[i];
+                if (!this.verts_.contains(vertex)) {
                     if (log.isDebugEnabled()) {
-                        System.out.print(" inserted " + edge.toString() + "\n");
+                        System.out.print(" inserted " + vertex.toString() + "\n");
                     }
-                    this.addEdge(edge);
+                    this.addVertex(vertex);
                 } else {
                     if (log.isDebugEnabled()) {
-                        System.out.print(" insertion failed " + connection(verts[i], verts[j]).toString() + "\n");
+                        System.out.print(" insertion failed " + vertex.toString() + "\n");
+                    }
+                }
+            }
+            // Now look for the edges between the vertices of the simplex.
+            // If it does not exist in this graph then create the edge.
+            for (int i = 0; i < s.getDimension() - 1; i++) {
+                for (int j = i + 1; j < s.getDimension(); j++) {
+                    if (!this.areConnected(verts[i], verts[j])) {
+                        GCSEdge edge = new GCSEdge(verts[i], verts[j]);
+                        if (log.isDebugEnabled()) {
+                            System.out.print(" inserted " + edge.toString() + "\n");
+                        }
+                        this.addEdge(edge);
+                    } else {
+                        if (log.isDebugEnabled()) {
+                            System.out.print(" insertion failed " + connection(verts[i], verts[j]).toString() + "\n");
+                        }
                     }
                 }
             }
         }
+        finally {
+            commitBatch();
+        }
     }
 
     /**
@@ -255,12 +262,18 @@ public class GCSGraph extends Graph {
                 }
             }
             // now loop over the elements of the ...ToDelete containers
-            // and delete the graph elements
-            for (Iterator i = edgesToDelete.iterator(); i.hasNext(); ) {
-                this.deleteEdge((Edge)i.next());
+            // and delete the graph elements, as one batch of changes
+            beginBatch();
+            try {
+                for (Iterator i = edgesToDelete.iterator(); i.hasNext(); ) {
+                    this.deleteEdge((Edge)i.next());
+                }
+                for (Iterator i = verticesToDelete.iterator(); i.hasNext(); ) {
+                    this.deleteVertex((Vertex)i.next());
+                }
             }
-            for (Iterator i = verticesToDelete.iterator(); i.hasNext(); ) {
-                this.deleteVertex((Vertex)i.next());
+            finally {
+                commitBatch();
             }
             simplices.remove(s);
         }
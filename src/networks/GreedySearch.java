@@ -0,0 +1,201 @@
+package networks;
+
+import java.util.*;
+import structures.*;
+
+/**
+ *
+ * <p>Title: Competitive Learning</p>
+ *
+ * <p>Description: An approximate winner search that walks the network
+ * graph.  GNG and GCS keep their edges close to the induced Delaunay
+ * triangulation, so from a unit near the input, stepping to whichever
+ * neighbour is nearer the input soon reaches the nearest unit.  The walk
+ * starts from the unit that won this input last time, and stops at a unit
+ * with no nearer neighbour.  The nearest and second nearest units measured
+ * on the way are the winners, so a step costs a few degrees' worth of
+ * distances however large the network is.</p>
+ *
+ * <p>A walk can stop at a local minimum that is not the true winner.  Every
+ * verifyInterval'th search is also made exactly, the exact winners are used,
+ * and a walk that stopped farther away than the nearest unit is counted as a
+ * miss.  The miss rate is the share of verified searches that missed.</p>
+ *
+ * @version 1.0
+ */
+
+public class GreedySearch {
+    /** The network walked */
+    private final Graph graph;
+
+    /** Check every verifyInterval'th search exactly, 0 never */
+    private final int verifyInterval;
+
+    /** The unit that last won each input */
+    private HashMap<Vertex, Vertex> lastWinner = new HashMap<Vertex, Vertex>();
+
+    /** The search each unit was last measured in, by vertex number */
+    private int[] measured = new int[0];
+
+    /** The exact winners of a verified search */
+    private Winners checked = new Winners();
+
+    /** Counters */
+    private int searches = 0;
+    private int verified = 0;
+    private int misses = 0;
+    private long evaluations = 0;
+
+    /**
+     * A greedy search over the network graph
+     * @param graph Graph the network
+     * @param verifyInterval int check every verifyInterval'th search exactly, 0 for never
+     */
+    public GreedySearch(final Graph graph, final int verifyInterval) {
+        this.graph = graph;
+        this.verifyInterval = verifyInterval;
+    }
+
+    /**
+     * Find the nearest and second nearest units to an input
+     * @param input Vertex the input, remembered with its winner
+     * @param kernel DistanceKernel the distance to rank by
+     * @param index PrototypeIndex for the exact searches, or null to scan
+     * @param winners Winners cleared, then given the winners
+     */
+    public void nearest(final Vertex input, final DistanceKernel kernel,
+                        final PrototypeIndex index, final Winners winners) {
+        searches++;
+        final double[] position = input.getPosition();
+        Vertex start = lastWinner.get(input);
+        if (start == null || !graph.hasVertex(start)) {
+            // nowhere to start from, so search exactly
+            exact(position, kernel, index, winners);
+        } else {
+            walk(start, position, kernel, winners);
+            if (verifyInterval > 0 && searches % verifyInterval == 0) {
+                exact(position, kernel, index, checked);
+                verified++;
+                // a unit at the same distance as the true winner is no miss
+                if (winners.getFirstError() > checked.getFirstError()) {
+                    misses++;
+                }
+                winners.clear();
+                winners.offer(checked.getFirst(), checked.getFirstError());
+                if (checked.getSecond() != null) {
+                    winners.offer(checked.getSecond(), checked.getSecondError());
+                }
+            }
+        }
+        if (winners.getFirst() != null) {
+            lastWinner.put(input, winners.getFirst());
+        }
+    }
+
+    /**
+     * The number of searches made
+     * @return int
+     */
+    public int getSearches() {
+        return searches;
+    }
+
+    /**
+     * The number of searches checked exactly
+     * @return int
+     */
+    public int getVerified() {
+        return verified;
+    }
+
+    /**
+     * The number of checked searches whose walk missed the nearest unit
+     * @return int
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * The share of checked searches whose walk missed the nearest unit
+     * @return double NaN if none have been checked
+     */
+    public double getMissRate() {
+        return (verified == 0) ? Double.NaN : ((double)misses) / verified;
+    }
+
+    /**
+     * The mean number of distances measured walking, per search
+     * @return double
+     */
+    public double getEvaluationsPerSearch() {
+        return (searches == 0) ? 0.0d : ((double)evaluations) / searches;
+    }
+
+    /**
+     * toString() overrides the Object method
+     * @return String
+     */
+    public String toString() {
+        return "greedy search: " + searches + " searches, " +
+               getEvaluationsPerSearch() + " distances a search, " +
+               misses + " of " + verified + " verified missed (" + getMissRate() + ")";
+    }
+
+    // private - no javadoc
+    // Step to the nearest neighbour nearer the input until there is none
+    private void walk(final Vertex start, final double[] position,
+                      final DistanceKernel kernel, final Winners winners) {
+        winners.clear();
+        if (measured.length < graph.indexBound()) {
+            measured = Arrays.copyOf(measured, Math.max(graph.indexBound(), measured.length * 2));
+        }
+        Vertex current = start;
+        double distance = measure(current, position, kernel, winners);
+        while (true) {
+            Vertex next = null;
+            double nextDistance = distance;
+            for (Iterator<Vertex> i = graph.getNeighbours(current); i.hasNext(); ) {
+                final Vertex neighbour = i.next();
+                final int number = graph.indexOf(neighbour);
+                if (measured[number] == searches) {
+                    continue;
+                }
+                final double d = measure(neighbour, position, kernel, winners);
+                if (d < nextDistance) {
+                    next = neighbour;
+                    nextDistance = d;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            current = next;
+            distance = nextDistance;
+        }
+    }
+
+    // private - no javadoc
+    private double measure(final Vertex vertex, final double[] position,
+                           final DistanceKernel kernel, final Winners winners) {
+        measured[graph.indexOf(vertex)] = searches;
+        evaluations++;
+        final double d = kernel.distance(position, vertex.getPosition(), winners.getSecondError());
+        winners.offer(vertex, d);
+        return d;
+    }
+
+    // private - no javadoc
+    private void exact(final double[] position, final DistanceKernel kernel,
+                       final PrototypeIndex index, final Winners winners) {
+        if (index != null) {
+            index.nearest(position, kernel, winners);
+            return;
+        }
+        winners.clear();
+        for (Iterator<Vertex> i = graph.getAllVertices(); i.hasNext(); ) {
+            final Vertex vertex = i.next();
+            winners.offer(vertex, kernel.distance(position, vertex.getPosition(), winners.getSecondError()));
+        }
+    }
+}
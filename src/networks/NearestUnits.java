@@ -0,0 +1,185 @@
+package networks;
+
+import structures.*;
+
+/**
+ *
+ * <p>Title: Competitive Learning</p>
+ *
+ * <p>Description: The K nearest units to an input, chosen with a bounded max
+ * heap.  Offer every unit with its distance; the heap keeps the K nearest seen
+ * so far, with the farthest of them on top, so each offer costs at most
+ * O(log K).  sort() then puts the K units in rank order, nearest first.</p>
+ *
+ * <p>Units at the same distance are all kept, and ranked in the order they
+ * were offered.  The arrays only grow, so one NearestUnits can be cleared and
+ * reused on every step.</p>
+ *
+ * @version 1.0
+ * @version 1.1 The place each unit kept was offered in
+ */
+
+public class NearestUnits {
+    /** The heap of units, their distances, and the order they were offered */
+    private Vertex[] vertices = new Vertex[0];
+    private double[] errors = new double[0];
+    private int[] order = new int[0];
+
+    /** The number of units kept, K */
+    private int capacity = 0;
+
+    /** The number of units in the heap */
+    private int size = 0;
+
+    /** The number of units offered since clear() */
+    private int offered = 0;
+
+    /** No parameter constructor */
+    public NearestUnits() {
+    }
+
+    /**
+     * Forget the units, ready to keep the nearest capacity units to the next input
+     * @param capacity int K
+     */
+    public void clear(final int capacity) {
+        if (capacity > vertices.length) {
+            vertices = new Vertex[capacity];
+            errors = new double[capacity];
+            order = new int[capacity];
+        }
+        for (int i = 0; i < size; i++) {
+            vertices[i] = null;
+        }
+        this.capacity = capacity;
+        size = 0;
+        offered = 0;
+    }
+
+    /**
+     * Offer a unit and its distance to the input
+     * @param vertex Vertex
+     * @param error double
+     */
+    final public void offer(final Vertex vertex, final double error) {
+        final int seq = offered++;
+        if (size < capacity) {
+            int i = size++;
+            // sift up
+            while (i > 0) {
+                final int parent = (i - 1) >> 1;
+                if (!after(error, seq, errors[parent], order[parent])) {
+                    break;
+                }
+                set(i, parent);
+                i = parent;
+            }
+            put(i, vertex, error, seq);
+        } else if (size > 0 && after(errors[0], order[0], error, seq)) {
+            siftDown(vertex, error, seq, size);
+        }
+    }
+
+    /**
+     * The distance a unit must not exceed to be kept: that of the farthest
+     * unit kept once there are K, otherwise infinite
+     * @return double
+     */
+    final public double getLimit() {
+        return (size < capacity || size == 0) ? Double.POSITIVE_INFINITY : errors[0];
+    }
+
+    /**
+     * Put the units kept in rank order, nearest first.  No more units may be
+     * offered until the next clear().
+     * @return int the number of units kept
+     */
+    public int sort() {
+        for (int end = size - 1; end > 0; end--) {
+            final Vertex vertex = vertices[end];
+            final double error = errors[end];
+            final int seq = order[end];
+            set(end, 0);
+            siftDown(vertex, error, seq, end);
+        }
+        capacity = 0;
+        return size;
+    }
+
+    /**
+     * The number of units kept
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get a unit kept, by rank once sorted
+     * @param rank int from 0, the nearest
+     * @return Vertex
+     */
+    final public Vertex getVertex(final int rank) {
+        return vertices[rank];
+    }
+
+    /**
+     * Get the distance of a unit kept, by rank once sorted
+     * @param rank int from 0, the nearest
+     * @return double
+     */
+    final public double getError(final int rank) {
+        return errors[rank];
+    }
+
+    /**
+     * Get the place a unit kept was offered in since clear(), by rank once
+     * sorted.  Offer the units in order, and this is the index of the unit.
+     * @param rank int from 0, the nearest
+     * @return int from 0, the first offered
+     */
+    final public int getOffered(final int rank) {
+        return order[rank];
+    }
+
+    // private - no javadoc
+    // Does unit a rank after unit b, farther or offered later at the same distance
+    private static boolean after(final double errorA, final int seqA, final double errorB, final int seqB) {
+        return errorA > errorB || (errorA == errorB && seqA > seqB);
+    }
+
+    // private - no javadoc
+    // Place a unit at the root of the heap of the first end entries and sift it down
+    private void siftDown(final Vertex vertex, final double error, final int seq, final int end) {
+        int i = 0;
+        while (true) {
+            int child = (i << 1) + 1;
+            if (child >= end) {
+                break;
+            }
+            if (child + 1 < end && after(errors[child + 1], order[child + 1], errors[child], order[child])) {
+                child++;
+            }
+            if (!after(errors[child], order[child], error, seq)) {
+                break;
+            }
+            set(i, child);
+            i = child;
+        }
+        put(i, vertex, error, seq);
+    }
+
+    // private - no javadoc
+    private void set(final int to, final int from) {
+        vertices[to] = vertices[from];
+        errors[to] = errors[from];
+        order[to] = order[from];
+    }
+
+    // private - no javadoc
+    private void put(final int i, final Vertex vertex, final double error, final int seq) {
+        vertices[i] = vertex;
+        errors[i] = error;
+        order[i] = seq;
+    }
+}
@@ -0,0 +1,138 @@
+package networks;
+
+/**
+ * <p>Title: Competitive Learning</p>
+ * <p>Description: How fast an Algorithm runs.  Algorithm.run() calls
+ * pace() after every iteration, and the policy decides how long, if at all,
+ * the training thread gives up the processor:</p>
+ * <ul>
+ * <li>UNTHROTTLED - never, for headless runs</li>
+ * <li>fixed(ms) - a sleep after every iteration, as run() always did</li>
+ * <li>frame(frame, budget) - iterate for up to budget milliseconds of every
+ * frame milliseconds, and sleep the rest, so a user interface drawing a
+ * frame at a time keeps up whatever the speed of an iteration</li>
+ * </ul>
+ * <p>Progress is reported by Algorithm on a clock of its own, so the
+ * pacing changes only the speed.</p>
+ * @version 1.0
+ */
+public abstract class Pacing {
+
+    /** Run flat out */
+    public static final Pacing UNTHROTTLED = new Unthrottled();
+
+    /**
+     * Sleep for a fixed time after every iteration
+     * @param milliseconds int
+     * @return Pacing
+     */
+    public static Pacing fixed(final int milliseconds) {
+        return (milliseconds <= 0) ? UNTHROTTLED : new Fixed(milliseconds);
+    }
+
+    /**
+     * Iterate for up to budget milliseconds of every frame
+     * @param frame int the frame in milliseconds
+     * @param budget int the milliseconds of each frame to iterate for
+     * @return Pacing
+     */
+    public static Pacing frame(final int frame, final int budget) {
+        if (budget <= 0 || budget > frame) {
+            System.err.print("Pacing: a budget of " + budget + " ms does not fit a frame of " + frame + " ms\n");
+            throw new IllegalArgumentException("Frame budget " + budget + " out of (0, " + frame + "]");
+        }
+        return (budget == frame) ? UNTHROTTLED : new Frame(frame, budget);
+    }
+
+    /**
+     * Choose a policy by name, as in defaults.ini
+     * @param name String UNTHROTTLED, FIXED or FRAME
+     * @param delay int the sleep of FIXED, in milliseconds
+     * @param frame int the frame of FRAME, in milliseconds
+     * @param budget int the budget of FRAME, in milliseconds
+     * @return Pacing
+     */
+    public static Pacing forName(final String name, final int delay, final int frame, final int budget) {
+        if (name.equalsIgnoreCase("UNTHROTTLED")) {
+            return UNTHROTTLED;
+        } else if (name.equalsIgnoreCase("FIXED")) {
+            return fixed(delay);
+        } else if (name.equalsIgnoreCase("FRAME")) {
+            return frame(frame, budget);
+        }
+        System.err.print("Pacing: unknown pacing " + name + "\n");
+        throw new IllegalArgumentException("Unknown pacing " + name);
+    }
+
+    /**
+     * Called by the training thread after every iteration
+     */
+    public abstract void pace();
+
+    // protected - no javadoc
+    protected static void sleep(final long milliseconds) {
+        try {
+            Thread.sleep(milliseconds);
+        }
+        catch (InterruptedException ie) {}
+    }
+
+    /** No pause at all */
+    private static final class Unthrottled extends Pacing {
+        public void pace() {
+        }
+
+        public String toString() {
+            return "unthrottled";
+        }
+    }
+
+    /** The same sleep after every iteration */
+    private static final class Fixed extends Pacing {
+        private final int milliseconds;
+
+        Fixed(final int milliseconds) {
+            this.milliseconds = milliseconds;
+        }
+
+        public void pace() {
+            sleep(milliseconds);
+        }
+
+        public String toString() {
+            return "fixed " + milliseconds + " ms an iteration";
+        }
+    }
+
+    /** A share of every frame */
+    private static final class Frame extends Pacing {
+        private final int frame;
+        private final int budget;
+        private long frameStart = 0L;
+
+        Frame(final int frame, final int budget) {
+            this.frame = frame;
+            this.budget = budget;
+        }
+
+        public void pace() {
+            final long now = System.nanoTime();
+            if (frameStart == 0L) {
+                frameStart = now;
+                return;
+            }
+            final long used = (now - frameStart) / 1000000L;
+            if (used >= budget) {
+                // sleep out the rest of the frame, if any is left
+                if (used < frame) {
+                    sleep(frame - used);
+                }
+                frameStart = System.nanoTime();
+            }
+        }
+
+        public String toString() {
+            return budget + " ms of every " + frame + " ms frame";
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package networks;
+
+import java.util.*;
+import structures.*;
+
+/**
+ *
+ * <p>Title: Competitive Learning</p>
+ *
+ * <p>Description: How far the units of a network have moved.  Each move of a
+ * unit towards an input is recorded before it is made, as the distance it
+ * covers.  A unit adapted at rate r towards x moves r times its distance
+ * from x, in any Minkowski norm.  Every unit keeps its total.</p>
+ *
+ * <p>Every so many steps the totals are copied as a checkpoint, and a few of
+ * the latest checkpoints are kept.  Each checkpoint keeps the largest growth
+ * of any total since it was taken, so no unit has moved further since the
+ * checkpoint than bound(checkpoint), which is what lets a BmuCache trust an
+ * old ranking of the units.  A ranking made before the oldest checkpoint
+ * kept is not trusted.</p>
+ *
+ * <p>Distances are in the norm of the training kernel, so it must be a
+ * metric, with a power of 1 or more.  The squared Euclidean kernel is
+ * rooted.  bound(checkpoint, power, dimension) converts a bound to another
+ * Minkowski norm.</p>
+ *
+ * <p>Adding or deleting a unit changes the ranking in a way no drift covers,
+ * so it starts a new generation, and rankings of older generations are not
+ * trusted.  The checkpoints start again with the generation.</p>
+ *
+ * <p>The drift is recorded by the training thread.  Readers on other
+ * threads, like the positions they read, may see it a step behind.</p>
+ *
+ * @version 1.0
+ */
+
+public class PrototypeDrift {
+    /** Checkpoints kept */
+    private static final int CHECKPOINTS = 16;
+
+    /** The network whose units are tracked */
+    private final Graph graph;
+
+    /** The iteration counter, which marks out the steps */
+    private final Counter iteration;
+
+    /** The distance moves are measured in */
+    private final DistanceKernel kernel;
+
+    /** Steps between checkpoints */
+    private final int interval;
+
+    /** The total drift of each unit, and the unit it belongs to, by vertex number */
+    private double[] total = new double[0];
+    private Vertex[] owner = new Vertex[0];
+
+    /** The totals at each checkpoint kept, and the largest growth of a total since */
+    private final double[][] base = new double[CHECKPOINTS][];
+    private final double[] since = new double[CHECKPOINTS];
+
+    /** The number of checkpoints taken, the latest being taken - 1 */
+    private volatile long taken = 0;
+
+    /** The step of the latest checkpoint */
+    private int checkpointStep = 0;
+
+    /** Bumped when units are added or deleted */
+    private volatile int generation = 0;
+
+    /**
+     * Track the drift of the units of a Graph
+     * @param graph Graph the network
+     * @param iteration Counter the iteration counter of the algorithm
+     * @param kernel DistanceKernel the training distance, of power 1 or more
+     * @param span int the number of steps a ranking should be trusted for,
+     * such as the steps between two visits of an input
+     */
+    public PrototypeDrift(final Graph graph, final Counter iteration,
+                          final DistanceKernel kernel, final int span) {
+        if (kernel.getPower() < 1.0d) {
+            System.err.print("PrototypeDrift: L" + kernel.getPower() + " is not a metric\n");
+            throw new IllegalArgumentException("Drift needs a metric, not L" + kernel.getPower());
+        }
+        this.graph = graph;
+        this.iteration = iteration;
+        this.kernel = kernel;
+        this.interval = Math.max(1, (span + CHECKPOINTS - 2) / (CHECKPOINTS - 1));
+        checkpoint();
+    }
+
+    /**
+     * The norm a distance of the kernel stands for, rooting the squared Euclidean distance
+     * @param kernel DistanceKernel
+     * @param distance double a distance of the kernel
+     * @return double
+     */
+    public static double norm(final DistanceKernel kernel, final double distance) {
+        return (kernel.getPower() == 2.0d) ? Math.sqrt(distance) : distance;
+    }
+
+    /**
+     * Record a unit about to move towards an input
+     * @param unit Vertex the unit
+     * @param input double[] the input
+     * @param rate double the learning rate
+     */
+    public void moving(final Vertex unit, final double[] input, final double rate) {
+        final int number = graph.indexOf(unit);
+        if (number < 0) {
+            return;
+        }
+        if (number >= total.length) {
+            final int length = Math.max(number + 1, graph.indexBound());
+            total = Arrays.copyOf(total, length);
+            owner = Arrays.copyOf(owner, length);
+        }
+        final int kept = (int)Math.min(taken, CHECKPOINTS);
+        if (owner[number] != unit) {
+            // a number handed on to a new unit, which has moved nowhere yet
+            owner[number] = unit;
+            total[number] = 0.0d;
+            for (int k = 0; k < kept; k++) {
+                if (number < base[k].length) {
+                    base[k][number] = 0.0d;
+                }
+            }
+        }
+        if (iteration.getCounter() - checkpointStep >= interval) {
+            checkpoint();
+        }
+        total[number] += Math.abs(rate) * norm(kernel, kernel.distance(input, unit.getPosition()));
+        for (int k = 0; k < kept; k++) {
+            final double[] at = base[k];
+            final double growth = total[number] - ((number < at.length) ? at[number] : 0.0d);
+            if (growth > since[k]) {
+                since[k] = growth;
+            }
+        }
+    }
+
+    /**
+     * Record that units have been added or deleted
+     */
+    public void restructured() {
+        generation++;
+        taken = 0;
+        checkpoint();
+    }
+
+    /**
+     * The current generation of the units
+     * @return int
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * The latest checkpoint, taken at or before the current step, to pass
+     * to bound() later
+     * @return long
+     */
+    public long getCheckpoint() {
+        return taken - 1;
+    }
+
+    /**
+     * No unit has moved further than this since a checkpoint, in the norm of
+     * the training kernel
+     * @param checkpoint long from getCheckpoint()
+     * @return double infinite if the checkpoint is no longer kept
+     */
+    public double bound(final long checkpoint) {
+        if (checkpoint < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        final double bound = since[(int)(checkpoint % CHECKPOINTS)];
+        // read the count after the bound, so a checkpoint taken over meanwhile is seen
+        return (checkpoint < taken - CHECKPOINTS) ? Double.POSITIVE_INFINITY : bound;
+    }
+
+    /**
+     * The bound since a checkpoint in another Minkowski norm over a
+     * dimension.  For vectors of d coordinates, the q norm is at most
+     * d^(1/q - 1/p) times the p norm when q is less than p, and at most the
+     * p norm otherwise.
+     * @param checkpoint long from getCheckpoint()
+     * @param power double the other power, where 99.9 or more is L infinity
+     * @param dimension int the number of coordinates
+     * @return double
+     */
+    public double bound(final long checkpoint, final double power, final int dimension) {
+        return bound(checkpoint) * scale(kernel.getPower(), power, dimension);
+    }
+
+    /**
+     * The total distance a unit has moved
+     * @param unit Vertex
+     * @return double
+     */
+    public double getDrift(final Vertex unit) {
+        final int number = graph.indexOf(unit);
+        return (number < 0 || number >= total.length || owner[number] != unit) ? 0.0d : total[number];
+    }
+
+    /**
+     * The training distance drift is measured in
+     * @return DistanceKernel
+     */
+    public DistanceKernel getKernel() {
+        return kernel;
+    }
+
+    // private - no javadoc
+    // Copy the totals, to measure the growth of each from here
+    private void checkpoint() {
+        final int slot = (int)(taken % CHECKPOINTS);
+        taken = taken + 1;
+        base[slot] = (base[slot] == null || base[slot].length != total.length)
+            ? total.clone() : copy(total, base[slot]);
+        since[slot] = 0.0d;
+        checkpointStep = iteration.getCounter();
+    }
+
+    // private - no javadoc
+    private static double[] copy(final double[] from, final double[] to) {
+        System.arraycopy(from, 0, to, 0, from.length);
+        return to;
+    }
+
+    // private - no javadoc
+    private static double scale(final double from, final double to, final int dimension) {
+        final double p = (from >= 99.9d) ? Double.POSITIVE_INFINITY : from;
+        final double q = (to >= 99.9d) ? Double.POSITIVE_INFINITY : to;
+        if (q >= p) {
+            return 1.0d;
+        }
+        return Math.pow(dimension, 1.0d / q - 1.0d / p);
+    }
+}
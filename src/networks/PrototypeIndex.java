@@ -0,0 +1,333 @@
+package networks;
+
+import java.util.*;
+import structures.*;
+
+/**
+ *
+ * <p>Title: Competitive Learning</p>
+ *
+ * <p>Description: A kd-tree over the positions of the units of a network,
+ * to find the nearest and second nearest units to an input without measuring
+ * the distance to every unit.  Each leaf holds a few units, and each node
+ * keeps a bounding box of the units below it.  A query visits the nearer
+ * child first, and skips any node whose box is farther away than the second
+ * nearest unit found so far.  The box bound is measured with the same
+ * DistanceKernel as the units, so the winners are those of a full scan.</p>
+ *
+ * <p>Units are trained in place, so the index has to be told when one moves,
+ * and when units are inserted or removed.  A moved unit stays in its leaf,
+ * and the boxes above it are only ever widened to cover it, so moves are
+ * cheap but loosen the tree.  After as many changes as there are units the
+ * tree is rebuilt from scratch, which keeps the cost of a change amortised
+ * O(log n).</p>
+ *
+ * <p>Units at equal distances are all kept, but which of them wins depends
+ * on the order the tree visits them, not on the order of the Graph.</p>
+ *
+ * @version 1.0
+ */
+
+public class PrototypeIndex {
+    /** Units per leaf before it splits */
+    private static final int BUCKET = 8;
+
+    /** The network indexed */
+    private final Graph graph;
+
+    /** The root of the tree, null when empty */
+    private Node root = null;
+
+    /** The leaf holding each unit */
+    private HashMap<Vertex, Node> leafOf = new HashMap<Vertex, Node>();
+
+    /** Changes since the last rebuild */
+    private int changes = 0;
+
+    /** Distances measured by queries, to units and to boxes */
+    private long evaluations = 0;
+
+    /** The point of a box nearest the query, reused between queries */
+    private double[] nearest = new double[0];
+
+    /**
+     * An index of the vertices of a Graph, built from its current vertices
+     * @param graph Graph
+     */
+    public PrototypeIndex(final Graph graph) {
+        this.graph = graph;
+        rebuild();
+    }
+
+    /**
+     * Build the tree again from the vertices of the Graph, with tight boxes
+     */
+    public void rebuild() {
+        final Vertex[] units = graph.getVerticesArray();
+        leafOf.clear();
+        root = (units.length == 0) ? null : build(units, 0, units.length, null);
+        changes = 0;
+    }
+
+    /**
+     * The number of units indexed
+     * @return int
+     */
+    public int size() {
+        return leafOf.size();
+    }
+
+    /**
+     * Add a unit that has been added to the Graph
+     * @param vertex Vertex
+     */
+    public void insert(final Vertex vertex) {
+        if (leafOf.containsKey(vertex)) {
+            return;
+        }
+        if (root == null) {
+            root = leaf(null, vertex.getPosition().length);
+        }
+        final double[] p = vertex.getPosition();
+        Node node = root;
+        while (node.bucket == null) {
+            node.cover(p);
+            node = (p[node.axis] < node.split) ? node.left : node.right;
+        }
+        node.cover(p);
+        node.add(vertex);
+        leafOf.put(vertex, node);
+        if (node.count > BUCKET) {
+            split(node);
+        }
+        changed();
+    }
+
+    /**
+     * Drop a unit that has been deleted from the Graph.  The boxes are left
+     * as they are, as a box that is too wide is still correct.
+     * @param vertex Vertex
+     */
+    public void remove(final Vertex vertex) {
+        final Node leaf = leafOf.remove(vertex);
+        if (leaf != null) {
+            leaf.delete(vertex);
+            changed();
+        }
+    }
+
+    /**
+     * Tell the index a unit has moved, widening the boxes above it if it has
+     * left them
+     * @param vertex Vertex
+     */
+    public void moved(final Vertex vertex) {
+        Node node = leafOf.get(vertex);
+        if (node == null || node.covers(vertex.getPosition())) {
+            return;
+        }
+        final double[] p = vertex.getPosition();
+        for ( ; node != null && !node.covers(p); node = node.parent) {
+            node.cover(p);
+        }
+        changed();
+    }
+
+    /**
+     * Find the nearest and second nearest units to an input
+     * @param input double[] the input position
+     * @param kernel DistanceKernel the distance to rank by
+     * @param winners Winners cleared, then given the winners
+     */
+    public void nearest(final double[] input, final DistanceKernel kernel, final Winners winners) {
+        winners.clear();
+        if (root == null) {
+            return;
+        }
+        if (nearest.length != input.length) {
+            nearest = new double[input.length];
+        }
+        search(root, input, kernel, winners);
+    }
+
+    /**
+     * The number of distances measured by queries so far, to units and boxes
+     * @return long
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    // private - no javadoc
+    private void changed() {
+        if (++changes > leafOf.size() + BUCKET) {
+            rebuild();
+        }
+    }
+
+    // private - no javadoc
+    private void search(final Node node, final double[] input, final DistanceKernel kernel, final Winners winners) {
+        if (node.bucket != null) {
+            for (int i = 0; i < node.count; i++) {
+                final Vertex vertex = node.bucket[i];
+                winners.offer(vertex, kernel.distance(input, vertex.getPosition(), winners.getSecondError()));
+            }
+            evaluations += node.count;
+            return;
+        }
+        final double left = bound(node.left, input, kernel, winners.getSecondError());
+        final double right = bound(node.right, input, kernel, winners.getSecondError());
+        if (left <= right) {
+            visit(node.left, left, input, kernel, winners);
+            visit(node.right, right, input, kernel, winners);
+        } else {
+            visit(node.right, right, input, kernel, winners);
+            visit(node.left, left, input, kernel, winners);
+        }
+    }
+
+    // private - no javadoc
+    // Search a child unless its box is farther away than the second winner
+    private void visit(final Node node, final double bound, final double[] input,
+                       final DistanceKernel kernel, final Winners winners) {
+        if (winners.getSecond() == null || bound <= winners.getSecondError()) {
+            search(node, input, kernel, winners);
+        }
+    }
+
+    // private - no javadoc
+    // The distance from the input to the nearest point of a box.  Kernels grow
+    // with every coordinate difference, so this is never more than the
+    // distance to any unit inside the box.  Past the limit, any farther value will do.
+    private double bound(final Node node, final double[] input, final DistanceKernel kernel, final double limit) {
+        if (node.count == 0 && node.bucket != null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        for (int d = 0; d < input.length; d++) {
+            final double x = input[d];
+            nearest[d] = (x < node.min[d]) ? node.min[d] : (x > node.max[d]) ? node.max[d] : x;
+        }
+        evaluations++;
+        return kernel.distance(input, nearest, limit);
+    }
+
+    // private - no javadoc
+    // Build a subtree over units[from..to), splitting at the median of the widest axis
+    private Node build(final Vertex[] units, final int from, final int to, final Node parent) {
+        final int dimension = units[from].getPosition().length;
+        if (to - from <= BUCKET) {
+            final Node leaf = leaf(parent, dimension);
+            for (int i = from; i < to; i++) {
+                leaf.cover(units[i].getPosition());
+                leaf.add(units[i]);
+                leafOf.put(units[i], leaf);
+            }
+            return leaf;
+        }
+        final Node node = new Node(parent, dimension);
+        for (int i = from; i < to; i++) {
+            node.cover(units[i].getPosition());
+        }
+        node.axis = node.widest();
+        final int axis = node.axis;
+        Arrays.sort(units, from, to, new Comparator<Vertex>() {
+            public int compare(final Vertex a, final Vertex b) {
+                return Double.compare(a.getPosition()[axis], b.getPosition()[axis]);
+            }
+        });
+        final int mid = (from + to) >>> 1;
+        node.split = units[mid].getPosition()[axis];
+        node.left = build(units, from, mid, node);
+        node.right = build(units, mid, to, node);
+        return node;
+    }
+
+    // private - no javadoc
+    // Turn an overfull leaf into a node with two leaves
+    private void split(final Node node) {
+        final Vertex[] units = Arrays.copyOf(node.bucket, node.count);
+        final Node parent = node.parent;
+        final Node replacement = build(units, 0, units.length, parent);
+        if (parent == null) {
+            root = replacement;
+        } else if (parent.left == node) {
+            parent.left = replacement;
+        } else {
+            parent.right = replacement;
+        }
+        // keep any width the old leaf had gathered, so the parents still cover it
+        replacement.cover(node.min);
+        replacement.cover(node.max);
+    }
+
+    // private - no javadoc
+    private Node leaf(final Node parent, final int dimension) {
+        final Node leaf = new Node(parent, dimension);
+        leaf.bucket = new Vertex[BUCKET + 1];
+        return leaf;
+    }
+
+    /** A node of the tree: a leaf when it has a bucket, otherwise a split */
+    private static final class Node {
+        Node parent;
+        Node left;
+        Node right;
+        int axis;
+        double split;
+        final double[] min;
+        final double[] max;
+        Vertex[] bucket;
+        int count;
+
+        Node(final Node parent, final int dimension) {
+            this.parent = parent;
+            min = new double[dimension];
+            max = new double[dimension];
+            Arrays.fill(min, Double.POSITIVE_INFINITY);
+            Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        }
+
+        boolean covers(final double[] p) {
+            for (int d = 0; d < p.length; d++) {
+                if (p[d] < min[d] || p[d] > max[d]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void cover(final double[] p) {
+            for (int d = 0; d < p.length; d++) {
+                if (p[d] < min[d]) min[d] = p[d];
+                if (p[d] > max[d]) max[d] = p[d];
+            }
+        }
+
+        int widest() {
+            int widest = 0;
+            for (int d = 1; d < min.length; d++) {
+                if (max[d] - min[d] > max[widest] - min[widest]) {
+                    widest = d;
+                }
+            }
+            return widest;
+        }
+
+        void add(final Vertex vertex) {
+            if (count == bucket.length) {
+                bucket = Arrays.copyOf(bucket, count * 2);
+            }
+            bucket[count++] = vertex;
+        }
+
+        void delete(final Vertex vertex) {
+            for (int i = 0; i < count; i++) {
+                if (bucket[i] == vertex) {
+                    bucket[i] = bucket[--count];
+                    bucket[count] = null;
+                    return;
+                }
+            }
+        }
+    }
+}
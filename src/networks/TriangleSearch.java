@@ -0,0 +1,244 @@
+package networks;
+
+import java.util.*;
+import structures.*;
+
+/**
+ *
+ * <p>Title: Competitive Learning</p>
+ *
+ * <p>Description: An exact nearest unit search over a fixed set of units,
+ * which skips units the triangle inequality rules out, after Elkan and
+ * Hamerly.  The distance between every pair of units is kept, along with
+ * half the distance from each unit to its nearest other unit.  With b the
+ * best unit so far, any unit j with d(b,j) &gt;= 2 d(x,b) is no nearer to
+ * the input x, so it is not measured; and once d(x,b) is under half the
+ * distance from b to its nearest other unit, no other unit is measured.</p>
+ *
+ * <p>The pairwise distances are refreshed lazily.  Between refreshes each
+ * move of a unit is recorded as the distance it covers, and the kept
+ * distances are lowered by the moves of both ends, so the bounds stay
+ * sound.  All the pairs are measured afresh once some unit has moved a
+ * quarter of the mean half distance, and there have been at least as many
+ * moves as units since the last time.</p>
+ *
+ * <p>Distances are in the norm of the kernel, so it must be a metric, with a
+ * power of 1 or more; the squared Euclidean kernel is rooted.  A unit is
+ * only skipped when it is strictly farther than the best, so the winner is
+ * that of a full scan in the order of the units, the first of any at equal
+ * distances.</p>
+ *
+ * @version 1.0
+ */
+
+public class TriangleSearch {
+    /** Rounding allowance on the bounds, relative to their size */
+    private static final double SLACK = 1.0e-9;
+
+    /** Refresh once a unit has moved this share of the mean half distance */
+    private static final double REFRESH = 0.25d;
+
+    /** The units, in scan order */
+    private final Vertex[] units;
+
+    /** The distance to rank by */
+    private final DistanceKernel kernel;
+
+    /** The distance between each pair of units at the last refresh, lower triangle */
+    private final double[][] between;
+
+    /** Half the distance from each unit to its nearest other unit, at the last refresh */
+    private final double[] half;
+    private double meanHalf = 0.0d;
+
+    /** How far each unit has moved since the last refresh, and the most any has */
+    private final double[] moved;
+    private double maxMoved = 0.0d;
+    private int moves = 0;
+
+    /** The pairwise distances need measuring afresh */
+    private boolean stale = true;
+
+    /** The distance to the winner of the last search */
+    private double error = Double.NaN;
+
+    /** Counters */
+    private long computed = 0;
+    private long skipped = 0;
+    private int refreshes = 0;
+
+    /**
+     * A search over a fixed set of units.  The pairwise distances are
+     * measured at the first search, so the units may still be placed.
+     * @param units Vertex[] the units, in the order a scan would take them
+     * @param kernel DistanceKernel the distance to rank by, of power 1 or more
+     */
+    public TriangleSearch(final Vertex[] units, final DistanceKernel kernel) {
+        if (kernel.getPower() < 1.0d) {
+            System.err.print("TriangleSearch: L" + kernel.getPower() + " is not a metric\n");
+            throw new IllegalArgumentException("Triangle search needs a metric, not L" + kernel.getPower());
+        }
+        this.units = units;
+        this.kernel = kernel;
+        between = new double[units.length][];
+        for (int i = 0; i < units.length; i++) {
+            between[i] = new double[i];
+        }
+        half = new double[units.length];
+        moved = new double[units.length];
+    }
+
+    /**
+     * The number of units
+     * @return int
+     */
+    public int size() {
+        return units.length;
+    }
+
+    /**
+     * The unit of an index
+     * @param i int
+     * @return Vertex
+     */
+    public Vertex getUnit(final int i) {
+        return units[i];
+    }
+
+    /**
+     * Find the nearest unit to an input
+     * @param input double[] the input position
+     * @return int the index of the nearest unit, -1 if there are none
+     */
+    public int nearest(final double[] input) {
+        final int n = units.length;
+        if (n == 0) {
+            error = Double.NaN;
+            return -1;
+        }
+        if (stale) {
+            refresh();
+        }
+        int best = 0;
+        double bestError = kernel.distance(input, units[0].getPosition());
+        double reach = PrototypeDrift.norm(kernel, bestError) * (1.0d + SLACK);
+        computed++;
+        for (int j = 1; j < n; j++) {
+            // no other unit is nearer than half the way to the nearest of them
+            if (reach < half[best] - 0.5d * (moved[best] + maxMoved)) {
+                skipped += n - j;
+                break;
+            }
+            // unit j is at least d(b,j) - d(x,b) away, so farther if d(b,j) > 2 d(x,b)
+            if (reach < 0.5d * (pair(best, j) - moved[best] - moved[j])) {
+                skipped++;
+                continue;
+            }
+            final double e = kernel.distance(input, units[j].getPosition(), bestError);
+            computed++;
+            if (e < bestError) {
+                best = j;
+                bestError = e;
+                reach = PrototypeDrift.norm(kernel, bestError) * (1.0d + SLACK);
+            }
+        }
+        error = bestError;
+        return best;
+    }
+
+    /**
+     * The distance to the winner of the last search, by the kernel
+     * @return double
+     */
+    public double getError() {
+        return error;
+    }
+
+    /**
+     * Record a unit about to move towards an input
+     * @param i int the index of the unit
+     * @param error double the kernel distance from the unit to the input
+     * @param rate double the learning rate
+     */
+    public void moving(final int i, final double error, final double rate) {
+        if (stale) {
+            return;
+        }
+        moved[i] += Math.abs(rate) * PrototypeDrift.norm(kernel, error);
+        moves++;
+        if (moved[i] > maxMoved) {
+            maxMoved = moved[i];
+        }
+        // at most one refresh per units.length moves, so a refresh costs
+        // no more than half a scan a move
+        if (maxMoved > REFRESH * meanHalf && moves >= units.length) {
+            stale = true;
+        }
+    }
+
+    /**
+     * The distances measured, by the searches and the refreshes
+     * @return long
+     */
+    public long getComputed() {
+        return computed;
+    }
+
+    /**
+     * The distances the searches did not need to measure
+     * @return long
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * The number of times the pairwise distances were measured
+     * @return int
+     */
+    public int getRefreshes() {
+        return refreshes;
+    }
+
+    /**
+     * toString() overrides the Object method
+     * @return String
+     */
+    public String toString() {
+        final long total = computed + skipped;
+        return "triangle search: " + computed + " distances computed, " + skipped + " skipped (" +
+               ((total == 0) ? Double.NaN : ((double)skipped) / total) + "), " + refreshes + " refreshes";
+    }
+
+    // private - no javadoc
+    private double pair(final int i, final int j) {
+        return (i > j) ? between[i][j] : between[j][i];
+    }
+
+    // private - no javadoc
+    // Measure every pair of units afresh and forget the moves
+    private void refresh() {
+        final int n = units.length;
+        Arrays.fill(half, Double.POSITIVE_INFINITY);
+        for (int i = 1; i < n; i++) {
+            final double[] p = units[i].getPosition();
+            for (int j = 0; j < i; j++) {
+                final double d = PrototypeDrift.norm(kernel, kernel.distance(p, units[j].getPosition()));
+                between[i][j] = d;
+                if (0.5d * d < half[i]) half[i] = 0.5d * d;
+                if (0.5d * d < half[j]) half[j] = 0.5d * d;
+            }
+        }
+        computed += ((long)n) * (n - 1) / 2;
+        meanHalf = 0.0d;
+        for (int i = 0; i < n; i++) {
+            meanHalf += half[i];
+        }
+        meanHalf /= n;
+        Arrays.fill(moved, 0.0d);
+        maxMoved = 0.0d;
+        moves = 0;
+        stale = false;
+        refreshes++;
+    }
+}
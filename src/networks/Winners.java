@@ -0,0 +1,90 @@
+package networks;
+
+import structures.*;
+
+/**
+ *
+ * <p>Title: Competitive Learning</p>
+ *
+ * <p>Description: The nearest and second nearest units to an input, found in
+ * one pass over the units.  Offer every unit with its distance, then read back
+ * both winners and their distances.  Nothing is allocated, so one Winners can
+ * be cleared and reused on every step.</p>
+ *
+ * <p>Units at the same distance are all kept: the first offered is the
+ * nearest, and a later one at the same distance is the second nearest.</p>
+ *
+ * @version 1.0
+ */
+
+public class Winners {
+    /** The nearest unit and its distance */
+    private Vertex first;
+    private double firstError;
+
+    /** The second nearest unit and its distance */
+    private Vertex second;
+    private double secondError;
+
+    /** No parameter constructor */
+    public Winners() {
+        clear();
+    }
+
+    /** Forget the winners, ready for the next input */
+    public void clear() {
+        first = null;
+        second = null;
+        firstError = Double.POSITIVE_INFINITY;
+        secondError = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Offer a unit and its distance to the input
+     * @param vertex Vertex
+     * @param error double
+     */
+    final public void offer(final Vertex vertex, final double error) {
+        if (first == null || error < firstError) {
+            second = first;
+            secondError = firstError;
+            first = vertex;
+            firstError = error;
+        } else if (second == null || error < secondError) {
+            second = vertex;
+            secondError = error;
+        }
+    }
+
+    /**
+     * Get the nearest unit
+     * @return Vertex null if nothing has been offered
+     */
+    final public Vertex getFirst() {
+        return first;
+    }
+
+    /**
+     * Get the distance of the nearest unit
+     * @return double
+     */
+    final public double getFirstError() {
+        return firstError;
+    }
+
+    /**
+     * Get the second nearest unit
+     * @return Vertex null if fewer than two units have been offered
+     */
+    final public Vertex getSecond() {
+        return second;
+    }
+
+    /**
+     * Get the distance of the second nearest unit
+     * @return double
+     */
+    final public double getSecondError() {
+        return secondError;
+    }
+}
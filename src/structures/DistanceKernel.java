@@ -0,0 +1,338 @@
+package structures;
+
+/**
+ * <p>Title: Competitive Learning</p>
+ * <p>Description: The Minkowski distance of one power, chosen once rather than
+ * on every call.  forPower() picks a kernel the way Vertex.Minkowski() picks a
+ * branch, and each kernel returns exactly what Vertex.Minkowski() returns for
+ * its power, so the two can be swapped without changing any result:</p>
+ * <ul>
+ * <li>power 1 - L1, the sum of the absolute differences</li>
+ * <li>power 2 - the sum of the squared differences, with no root, which ranks
+ * as the Euclidean distance does</li>
+ * <li>power 99.9 or more - L infinity, the largest absolute difference</li>
+ * <li>any other power p - the p'th root of the sum of the differences to the p</li>
+ * </ul>
+ * <p>A winner search only needs a distance while it can still beat the
+ * best so far.  distance(a, b, limit) stops summing once the partial sum
+ * has passed the limit, checked every few dimensions, and returns it: a value above the limit, which
+ * never wins a strict comparison.  Up to the limit it is the full distance,
+ * summed in the same order.  ordered() sums the dimensions in a given
+ * order, most varied first, so the limit is passed sooner.</p>
+ * @version 1.0
+ * @version 1.1 Early abandoning distance, and dimension ordering
+ */
+public abstract class DistanceKernel {
+
+    /** The L1 or city block distance */
+    public static final DistanceKernel L1 = new Manhattan();
+
+    /** The squared Euclidean distance, for ranking */
+    public static final DistanceKernel SQUARED_L2 = new SquaredEuclidean();
+
+    /** The L infinity or chessboard distance */
+    public static final DistanceKernel L_INFINITY = new Chebyshev();
+
+    /** Dimensions summed between checks of the limit */
+    private static final int BLOCK = 8;
+
+    /** The power this kernel stands in for */
+    private final double power;
+
+    // protected - no javadoc
+    protected DistanceKernel(final double power) {
+        this.power = power;
+    }
+
+    /**
+     * Choose the kernel for a Minkowski power, as Vertex.Minkowski() would.
+     * An unsupported power is reported and exits, as Vertex.Minkowski() does.
+     * @param power double L norm, where 0.0 < power <= Double.MAX_VALUE
+     * @return DistanceKernel
+     */
+    public static DistanceKernel forPower(final double power) {
+        if (power == 2.0) {
+            return SQUARED_L2;
+        } else if (power >= 99.9d) {
+            // Consider Power > 99 as L infinity
+            return L_INFINITY;
+        } else if (power <= 0.0) {
+            System.out.print("Unsupported Minkowski power: " + power + "\n");
+            System.exit(-5);
+            return null;
+        } else if (power == 1.0) {
+            return L1;
+        }
+        return new General(power);
+    }
+
+    /**
+     * The distance between two weight vectors of the same length
+     * @param a weight vector 1
+     * @param b weight vector 2
+     * @return double the same value as Vertex.Minkowski(getPower(), a, b)
+     */
+    public abstract double distance(final double[] a, final double[] b);
+
+    /**
+     * The distance between two weight vectors, abandoned once it is past a
+     * limit.  Kernels that cannot abandon return the full distance.
+     * @param a weight vector 1
+     * @param b weight vector 2
+     * @param limit double the distance to beat
+     * @return double the distance if it is at most the limit, otherwise
+     * some value greater than the limit
+     */
+    public double distance(final double[] a, final double[] b, final double limit) {
+        return distance(a, b);
+    }
+
+    /**
+     * This kernel, summing the dimensions in a given order.  The order
+     * changes the rounding of L1 and the squared Euclidean distance, so
+     * the distances may differ from those of this kernel in the last place.
+     * Other powers keep their own order.
+     * @param order int[] a permutation of the dimensions, the first summed first
+     * @return DistanceKernel
+     */
+    public DistanceKernel ordered(final int[] order) {
+        if (power == 1.0d) {
+            return new OrderedManhattan(order);
+        } else if (power == 2.0d) {
+            return new OrderedSquaredEuclidean(order);
+        } else if (power >= 99.9d) {
+            return new OrderedChebyshev(power, order);
+        }
+        return this;
+    }
+
+    /**
+     * The Minkowski power this kernel stands in for
+     * @return double
+     */
+    public double getPower() {
+        return power;
+    }
+
+    /**
+     * toString() overrides the Object method
+     * @return String
+     */
+    public String toString() {
+        return "L" + power;
+    }
+
+    /** Sum of absolute differences.  pow(x, 1) is x, so this matches Minkowski */
+    private static final class Manhattan extends DistanceKernel {
+        Manhattan() {
+            super(1.0d);
+        }
+
+        public double distance(final double[] a, final double[] b) {
+            double d = 0.0d;
+            for (int n = a.length; --n >= 0; ) {
+                final double diff = a[n] - b[n];
+                d += (diff < 0.0d) ? -diff : diff;
+            }
+            return d;
+        }
+
+        public double distance(final double[] a, final double[] b, final double limit) {
+            double d = 0.0d;
+            for (int n = a.length; n > 0; ) {
+                for (final int stop = Math.max(n - BLOCK, 0); n > stop; ) {
+                    final double diff = a[--n] - b[n];
+                    d += (diff < 0.0d) ? -diff : diff;
+                }
+                if (d > limit) {
+                    return d;
+                }
+            }
+            return d;
+        }
+    }
+
+    /** Sum of squared differences, left without the root */
+    private static final class SquaredEuclidean extends DistanceKernel {
+        SquaredEuclidean() {
+            super(2.0d);
+        }
+
+        public double distance(final double[] a, final double[] b) {
+            double d = 0.0d;
+            for (int n = a.length; --n >= 0; ) {
+                final double diff = a[n] - b[n];
+                d += diff * diff;
+            }
+            return d;
+        }
+
+        public double distance(final double[] a, final double[] b, final double limit) {
+            double d = 0.0d;
+            for (int n = a.length; n > 0; ) {
+                for (final int stop = Math.max(n - BLOCK, 0); n > stop; ) {
+                    final double diff = a[--n] - b[n];
+                    d += diff * diff;
+                }
+                if (d > limit) {
+                    return d;
+                }
+            }
+            return d;
+        }
+    }
+
+    /** Largest absolute difference, from Double.MIN_VALUE as in Minkowski */
+    private static final class Chebyshev extends DistanceKernel {
+        Chebyshev() {
+            super(Double.POSITIVE_INFINITY);
+        }
+
+        public double distance(final double[] a, final double[] b) {
+            double d = Double.MIN_VALUE;
+            for (int n = a.length; --n >= 0; ) {
+                final double scratch = Math.abs(a[n] - b[n]);
+                if (scratch > d) {
+                    d = scratch;
+                }
+            }
+            return d;
+        }
+
+        public double distance(final double[] a, final double[] b, final double limit) {
+            double d = Double.MIN_VALUE;
+            for (int n = a.length; --n >= 0; ) {
+                final double scratch = Math.abs(a[n] - b[n]);
+                if (scratch > d) {
+                    d = scratch;
+                    if (d > limit) {
+                        return d;
+                    }
+                }
+            }
+            return d;
+        }
+    }
+
+    /** L1 by the dimensions in a given order */
+    private static final class OrderedManhattan extends DistanceKernel {
+        private final int[] order;
+
+        OrderedManhattan(final int[] order) {
+            super(1.0d);
+            this.order = order.clone();
+        }
+
+        public double distance(final double[] a, final double[] b) {
+            double d = 0.0d;
+            for (int i = 0; i < order.length; i++) {
+                final double diff = a[order[i]] - b[order[i]];
+                d += (diff < 0.0d) ? -diff : diff;
+            }
+            return d;
+        }
+
+        public double distance(final double[] a, final double[] b, final double limit) {
+            double d = 0.0d;
+            for (int i = 0; i < order.length; ) {
+                for (final int stop = Math.min(i + BLOCK, order.length); i < stop; i++) {
+                    final double diff = a[order[i]] - b[order[i]];
+                    d += (diff < 0.0d) ? -diff : diff;
+                }
+                if (d > limit) {
+                    return d;
+                }
+            }
+            return d;
+        }
+    }
+
+    /** Squared Euclidean by the dimensions in a given order */
+    private static final class OrderedSquaredEuclidean extends DistanceKernel {
+        private final int[] order;
+
+        OrderedSquaredEuclidean(final int[] order) {
+            super(2.0d);
+            this.order = order.clone();
+        }
+
+        public double distance(final double[] a, final double[] b) {
+            double d = 0.0d;
+            for (int i = 0; i < order.length; i++) {
+                final double diff = a[order[i]] - b[order[i]];
+                d += diff * diff;
+            }
+            return d;
+        }
+
+        public double distance(final double[] a, final double[] b, final double limit) {
+            double d = 0.0d;
+            for (int i = 0; i < order.length; ) {
+                for (final int stop = Math.min(i + BLOCK, order.length); i < stop; i++) {
+                    final double diff = a[order[i]] - b[order[i]];
+                    d += diff * diff;
+                }
+                if (d > limit) {
+                    return d;
+                }
+            }
+            return d;
+        }
+    }
+
+    /** L infinity by the dimensions in a given order */
+    private static final class OrderedChebyshev extends DistanceKernel {
+        private final int[] order;
+
+        OrderedChebyshev(final double power, final int[] order) {
+            super(power);
+            this.order = order.clone();
+        }
+
+        public double distance(final double[] a, final double[] b) {
+            return distance(a, b, Double.POSITIVE_INFINITY);
+        }
+
+        public double distance(final double[] a, final double[] b, final double limit) {
+            double d = Double.MIN_VALUE;
+            for (int i = 0; i < order.length; i++) {
+                final double scratch = Math.abs(a[order[i]] - b[order[i]]);
+                if (scratch > d) {
+                    d = scratch;
+                    if (d > limit) {
+                        return d;
+                    }
+                }
+            }
+            return d;
+        }
+    }
+
+    /** Any other power, by Math.pow */
+    private static final class General extends DistanceKernel {
+        private final double inverse;
+
+        General(final double power) {
+            super(power);
+            inverse = 1.0d / power;
+        }
+
+        public double distance(final double[] a, final double[] b) {
+            final double power = getPower();
+            double d = 0.0d;
+            for (int n = a.length; --n >= 0; ) {
+                final double diff = a[n] - b[n];
+                // good old fashioned optimised ABS
+                if (diff < 0.0d) {
+                    d += Math.pow(-diff, power);
+                }
+                else {
+                    d += Math.pow(diff, power);
+                }
+            }
+            // the sum of non-negative terms is never negative, so the
+            // negative root kludge of Minkowski is not needed
+            return Math.pow(d, inverse);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package structures;
 
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.ListIterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.NoSuchElementException;
 import java.util.Observable;
 import java.util.Vector;
-import java.util.LinkedList;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -26,23 +29,100 @@ import org.apache.commons.logging.LogFactory;
  * @version 2.0 15 February 2005 No longer an Observable
  * @version 2.1 22 February 2005 Reinstated Observer with notifyObservers() added to all add and remove methods
  * @version 2.2 Removed compiler > 1.5 container unchecked warnings
+ * @version 2.3 Per-vertex incidence lists, so degree, neighbour and incident edge
+ * queries no longer scan every edge of the graph
+ * @version 2.4 Edges hashed by their unordered pair of vertex ids for connection()
+ * @version 2.5 Connected components maintained as the graph is edited
+ * @version 2.6 distance() is a plain breadth first search, see HopDistances for all pairs
+ * @version 2.7 snapshot() for an immutable compressed sparse row copy
+ * @version 2.8 beginBatch() and commitBatch() gather a run of changes into one
+ * notification, and Observers are passed a GraphDelta of what changed
+ * @version 2.9 Concurrent read mode, where readers in other threads take the
+ * published snapshot and iterate copies, and never wait on the writer
+ * @version 3.0 Vertices and edges held in hashed sets, so membership tests
+ * and removal no longer search the whole container
+ * @version 3.1 Dense vertex numbers, and an iterative getConnectedComponents()
+ * that keeps its state in a bitset instead of the Vertex visited flags
+ * @version 3.2 No GraphDelta is made for a change outside a batch that no
+ * Observer will be told of
+ * @version 3.3 Concurrent reads publish a snapshot when a reader asks for
+ * one, not on every change, and the writer iterates the Graph itself
+ * @version 3.4 The writer publishes the snapshot a reader asked for at the
+ * end of its next change, so readers never take the Graph lock
  */
 public class Graph extends Observable implements Cloneable {
 	
     protected Log log = LogFactory.getLog(this.getClass());
 	
-    /** The container Object for this Graph's Edges */
-    protected Vector<Edge> edges_ = new Vector<Edge>();
+    /**
+     * The container Object for this Graph's Edges.  Edge and Vertex keep the
+     * Object identity equals() and hashCode(), so membership is by identity,
+     * and the linked set iterates in the order the edges were added.
+     */
+    protected LinkedHashSet<Edge> edges_ = new LinkedHashSet<Edge>();
+
+    /** The container Object for this Graph's Vertices, in the order they were added */
+    protected LinkedHashSet<Vertex> verts_ = new LinkedHashSet<Vertex>();
+
+    /** Dense number of each Vertex of this Graph, numbers are reused after a vertex is deleted */
+    protected HashMap<Vertex, Integer> index_ = new HashMap<Vertex, Integer>();
+
+    /** The Vertex holding each dense number, null where the number is free */
+    protected Vector<Vertex> indexed_ = new Vector<Vertex>();
+
+    /** Dense numbers freed by deleted vertices, handed out again before new ones */
+    private int[] freeIndex = new int[8];
+    private int numFreeIndex = 0;
+
+    /** The incident Edges of each Vertex, kept in step with edges_ by the add and delete methods */
+    protected HashMap<Vertex, Vector<Edge>> incidence_ = new HashMap<Vertex, Vector<Edge>>();
+
+    /** The Edges of this Graph keyed by the unordered pair of their end vertex ids */
+    protected HashMap<Long, Edge> pairs_ = new HashMap<Long, Edge>();
+
+    /** The connected component of each Vertex, maintained by the add and delete methods */
+    protected HashMap<Vertex, Component> components_ = new HashMap<Vertex, Component>();
 
-    /** The container Object for this Graph's Vertices */
-    protected Vector<Vertex> verts_ = new Vector<Vertex>();
+    /** The number of connected components in this Graph */
+    private int numComponents = 0;
 
+    /** The label given to the next new component */
+    private int nextComponent = 0;
 
-    // The list of paths
-    protected LinkedList<LinkedList> distance_pathq = new LinkedList<LinkedList>();
+    /** When set, connection() scans every edge to report vertices joined more than once */
+    private boolean duplicateEdgeCheck = false;
 
-    // begin with a single path going nowhere
-    protected LinkedList<Vertex> distance_path = new LinkedList<Vertex>();
+    /** The number of beginBatch() calls still to be committed */
+    private int batchDepth = 0;
+
+    /** The changes made since the outermost beginBatch() */
+    private GraphDelta batch = null;
+
+    /** The kinds of change recorded in a GraphDelta */
+    private static final int VERTEX_ADDED = 0;
+    private static final int VERTEX_DELETED = 1;
+    private static final int EDGE_ADDED = 2;
+    private static final int EDGE_DELETED = 3;
+
+    /** When set, readers take published snapshots and the iterators of other threads work on copies */
+    private volatile boolean concurrentReads = false;
+
+    /** The latest snapshot published, in concurrent read mode, and the version it shows */
+    private volatile GraphSnapshot published = null;
+    private volatile long publishedVersion = -1;
+
+    /** Set by a reader that found the published snapshot out of date */
+    private volatile boolean wanted = false;
+
+    /** The thread that made the last change, which iterates the containers themselves */
+    private volatile Thread writer = null;
+
+    /** Counts the changes made to this Graph */
+    private volatile long version = 0;
+
+    /** Copies of verts_ and edges_ to iterate in concurrent read mode, published with the snapshot */
+    private volatile Vertex[] vertexView = null;
+    private volatile Edge[] edgeView = null;
 
 
     /** No parameter constructor */
@@ -55,19 +135,121 @@ public class Graph extends Observable implements Cloneable {
      * @return an iterator to all the vertices
      */
     public Iterator<Vertex> getAllVertices() {
+        if (concurrentReads && Thread.currentThread() != writer) {
+            final Vertex[] view = vertexView;
+            if (view != null) {
+                request();
+                return new ArrayIterator<Vertex>(view);
+            }
+        }
         return verts_.iterator();
     }
 
-    public Vertex [] getVerticesArray() {
-      return (Vertex [])verts_.toArray();
+    synchronized public Vertex [] getVerticesArray() {
+      return verts_.toArray(new Vertex[verts_.size()]);
+    }
+
+    /**
+     * Switch on the debugging check for vertices joined by more than one edge.
+     * The check costs a scan of every edge on each connection() call.
+     * @param state true to check, false otherwise
+     */
+    synchronized public void setDuplicateEdgeCheck(final boolean state) {
+        duplicateEdgeCheck = state;
     }
 
     /**
      * Get an Iterator of all the edges in this Graph
      * @return an iterator to all the edges
      */
-    synchronized public Iterator<Edge> getAllEdges() {
-        return edges_.iterator();
+    public Iterator<Edge> getAllEdges() {
+        if (concurrentReads && Thread.currentThread() != writer) {
+            final Edge[] view = edgeView;
+            if (view != null) {
+                request();
+                return new ArrayIterator<Edge>(view);
+            }
+        }
+        synchronized (this) {
+            return edges_.iterator();
+        }
+    }
+
+    // private - no javadoc
+    // Ask the writer for a new snapshot, if the published one is out of date
+    private void request() {
+        if (publishedVersion != version) {
+            wanted = true;
+        }
+    }
+
+    /**
+     * Switch the concurrent read mode on or off.  In this mode getPublished()
+     * hands out a published GraphSnapshot, and getAllVertices() and
+     * getAllEdges() iterate copies published with it, except on the thread
+     * making the changes, which iterates the Graph itself.  None of these
+     * take the Graph lock, so readers never hold up the writer.  A reader
+     * that finds them out of date asks for new ones, and the writer takes
+     * them at the end of its next change or batch, so the readers see the
+     * Graph as it stood one request ago.  The writer pays for a snapshot
+     * only when a reader has asked for one, and calls publish() when it
+     * stops for a while, so the readers catch up.
+     * @param state true for concurrent reads, false otherwise
+     */
+    synchronized public void setConcurrentReads(final boolean state) {
+        concurrentReads = state;
+        if (state) {
+            publish(true);
+        } else {
+            published = null;
+            vertexView = null;
+            edgeView = null;
+        }
+    }
+
+    /**
+     * Publish the Graph as it stands to the concurrent readers, unless a
+     * batch is open or nothing has changed since the last.  The writer
+     * calls this before it pauses or stops, so the readers are not left a
+     * change behind.
+     */
+    synchronized public void publish() {
+        if (concurrentReads && publishedVersion != version) {
+            publish(true);
+        }
+    }
+
+    /**
+     * Is the concurrent read mode on
+     * @return boolean
+     */
+    public boolean getConcurrentReads() {
+        return concurrentReads;
+    }
+
+    /**
+     * Get a snapshot of the Graph.  In the concurrent read mode this is the
+     * published snapshot, handed out without the Graph lock, and a new one
+     * is asked of the writer if the Graph has changed since.  Otherwise a
+     * new snapshot is taken of the Graph as it stands.
+     * @return GraphSnapshot
+     */
+    public GraphSnapshot getPublished() {
+        final GraphSnapshot current = published;
+        if (concurrentReads && current != null) {
+            request();
+            return current;
+        }
+        return snapshot();
+    }
+
+    /**
+     * The number of changes made to this Graph so far.  A reader can compare
+     * versions to tell whether the topology has moved on.
+     * @return long
+     */
+    public long getVersion() {
+        return version;
     }
 
     /**
@@ -85,54 +267,151 @@ public class Graph extends Observable implements Cloneable {
      * @return the degree of this vertex
      */
     synchronized public int degree(final Vertex vertex) {
-        int degree = 0;
         // is vertex a part of this graph?
-        if (isValid(vertex)) {
-            for (Iterator i = this.getAllEdges(); i.hasNext(); ) {
-                // get all the edges of the graph
-                final Edge edge = (Edge)i.next();
-                // and if the edge contains the vertex, increment the degree
-                if (isValid(edge)) {
-                    if (edge.contains(vertex)) {
-                        degree++;
-                    }
-                }
-            }
-        }
-        else {
+        if (!isValid(vertex)) {
             System.err.print("Graph.degree() called\n");
             System.err.print("Graph is\n" + this.toString());
             NoSuchElementException e = new NoSuchElementException("Graph doesn't contain Vertex " + vertex);
             e.printStackTrace();
             throw e;
         }
-        return degree;
+        return incidence(vertex).size();
+    }
+
+    /**
+     * Start a batch of changes.  Until the matching commitBatch() the add and
+     * delete methods do not notify the Observers, and the whole batch is
+     * notified as one change when it is committed.  Batches may be nested,
+     * in which case only the outermost commitBatch() notifies.
+     * Every beginBatch() must be matched by a commitBatch(), so call
+     * commitBatch() from a finally block.
+     */
+    synchronized public void beginBatch() {
+        if (batchDepth++ == 0) {
+            batch = new GraphDelta();
+        }
+    }
+
+    /**
+     * Finish a batch of changes started with beginBatch().  The outermost
+     * commit notifies the Observers once, with a GraphDelta of every change
+     * made in the batch, unless nothing changed.
+     * @return GraphDelta the changes made in the batch, or null if this
+     * commit closes a nested batch
+     */
+    synchronized public GraphDelta commitBatch() {
+        if (batchDepth == 0) {
+            System.err.print("Graph.commitBatch() called\n");
+            IllegalStateException e = new IllegalStateException("Graph.commitBatch() called without a beginBatch()");
+            e.printStackTrace();
+            throw e;
+        }
+        if (--batchDepth > 0) {
+            return null;
+        }
+        final GraphDelta delta = batch.result(verts_.size(), edges_.size(), numComponents);
+        batch = null;
+        if (!delta.isEmpty()) {
+            publish(false);
+            setChanged();
+            notifyObservers(delta);
+            notifyAll();
+        }
+        return delta;
+    }
+
+    /**
+     * Is a batch of changes open
+     * @return boolean true between beginBatch() and the outermost commitBatch()
+     */
+    synchronized public boolean inBatch() {
+        return batchDepth > 0;
+    }
+
+    // private - no javadoc
+    // Record a change in the open batch, or notify the Observers of it.  A
+    // delta is only made for a change outside a batch when it has an Observer.
+    private void changed(final int kind) {
+        version++;
+        writer = Thread.currentThread();
+        if (batchDepth > 0) {
+            record(batch, kind);
+            return;
+        }
+        publish(false);
+        if (countObservers() > 0) {
+            setChanged();
+            notifyObservers(record(new GraphDelta(), kind).result(verts_.size(), edges_.size(), numComponents));
+        }
+        notifyAll();
+    }
+
+    // private - no javadoc
+    private static GraphDelta record(final GraphDelta delta, final int kind) {
+        switch (kind) {
+            case VERTEX_ADDED:
+                return delta.vertexAdded();
+            case VERTEX_DELETED:
+                return delta.vertexDeleted();
+            case EDGE_ADDED:
+                return delta.edgeAdded();
+            default:
+                return delta.edgeDeleted();
+        }
+    }
+
+    // private - no javadoc
+    // Publish the snapshot and the copies for the concurrent readers, when
+    // forced or asked for, outside a batch.  Called with the Graph lock held.
+    private void publish(final boolean force) {
+        if (!concurrentReads || batchDepth > 0 || !(force || wanted)) {
+            return;
+        }
+        wanted = false;
+        vertexView = verts_.toArray(new Vertex[verts_.size()]);
+        edgeView = edges_.toArray(new Edge[edges_.size()]);
+        published = snapshot();
+        // the version last, as request() reads it first
+        publishedVersion = version;
     }
 
     /**
      * Add an edge to this graph
      * @param edge the edge to insert into the graph
-     * @return boolean status
+     * @return boolean status, false if the edge is already in this graph
      */
     synchronized public boolean addEdge(final Edge edge) {
-        final boolean status = edges_.add(edge);
-        setChanged();
-        notifyObservers();
-        notifyAll();
-        return status;
+        if (!edges_.add(edge)) {
+            return false;
+        }
+        incidence(edge.getOneEnd()).add(edge);
+        if (edge.getOtherEnd() != edge.getOneEnd()) {
+            incidence(edge.getOtherEnd()).add(edge);
+            // the first edge between a pair of vertices answers connection()
+            final Long key = pair(edge.getOneEnd(), edge.getOtherEnd());
+            if (!pairs_.containsKey(key)) {
+                pairs_.put(key, edge);
+            }
+            merge(component(edge.getOneEnd()), component(edge.getOtherEnd()));
+        }
+        changed(EDGE_ADDED);
+        return true;
     }
 
     /**
      * Add a vertex to this graph
      * @param vertex the vertex to insert into this graph
-     * @return boolean status
+     * @return boolean status, false if the vertex is already in this graph
      */
     synchronized public boolean addVertex(final Vertex vertex) {
-        final boolean status = verts_.add(vertex);
-        setChanged();
-        notifyObservers();
-        notifyAll();
-        return status;
+        if (!verts_.add(vertex)) {
+            return false;
+        }
+        incidence(vertex);
+        component(vertex);
+        number(vertex);
+        changed(VERTEX_ADDED);
+        return true;
     }
 
     /**
@@ -143,9 +422,13 @@ public class Graph extends Observable implements Cloneable {
     synchronized public boolean deleteVertex(final Vertex vertex) {
         if (isValid(vertex)) {
             final boolean status = verts_.remove(vertex);
-            setChanged();
-            notifyObservers();
-            notifyAll();
+            // keep the list of any edges left dangling on the vertex
+            if (incidence(vertex).isEmpty()) {
+                incidence_.remove(vertex);
+            }
+            release(vertex);
+            unnumber(vertex);
+            changed(VERTEX_DELETED);
             return status;
         } else {
             System.err.print("Graph.deleteVertex(Vertex " + vertex.toString() + ") called\n");
@@ -164,9 +447,11 @@ public class Graph extends Observable implements Cloneable {
     synchronized public boolean deleteEdge(final Edge edge) {
         if (isValid(edge)) {
             final boolean status = edges_.remove(edge);
-            setChanged();
-            notifyObservers();
-            notifyAll();
+            unlink(edge.getOneEnd(), edge);
+            unlink(edge.getOtherEnd(), edge);
+            unpair(edge);
+            split(edge.getOneEnd(), edge.getOtherEnd());
+            changed(EDGE_DELETED);
             return status;
         } else {
             System.err.print("Graph.deleteEdge(Edge " + edge.toString() + ") called\n");
@@ -179,31 +464,23 @@ public class Graph extends Observable implements Cloneable {
     }
 
     /**
-     * Get the edges that are incident to a vertex
+     * Get the edges that are incident to a vertex.  The iterator reads the
+     * incidence list of the vertex itself, not a copy, so the edges of the
+     * vertex must not be added or deleted while it is in use; collect them
+     * first, as GNG does before deleting edges.  Its remove() is unsupported.
      * @param vertex the vertex from which the incident edges are taken
      * @return an Iterator of edges
      */
-    synchronized public Iterator getIncidentEdges(final Vertex vertex) {
-        Vector<Edge> edgesFound = new Vector<Edge>();
+    synchronized public Iterator<Edge> getIncidentEdges(final Vertex vertex) {
         // is vertex a part of this graph?
-        if (isValid(vertex)) {
-            for (Iterator i = edges_.iterator(); i.hasNext(); ) {
-                // get all the edges in this graph
-                final Edge edge = (Edge)i.next();
-                // and if the edge contains the vertex, it is incident
-                if (edge.contains(vertex)) {
-                    edgesFound.add(edge);
-                }
-            }
-        }
-        else {
+        if (!isValid(vertex)) {
             NoSuchElementException e = new NoSuchElementException("Graph.getIncidentEdges(" + vertex.toString() +
                 ") Vertex not found\n");
             e.printStackTrace();
             throw e;
         }
-        // return an iterator over the edges
-        return edgesFound.iterator();
+        // return a read only iterator over the incidence list
+        return new IncidentEdgeIterator(incidence(vertex));
     }
 
     /**
@@ -211,12 +488,25 @@ public class Graph extends Observable implements Cloneable {
      * @return int Return the number of sub-Graphs
      */
     synchronized final public int numSubGraphs() {
-        int i = 0;
-        for (Iterator iter = getSubGraphs(); iter.hasNext(); ) {
-            iter.next();
-            i++;
+        return numComponents;
+    }
+
+    /**
+     * Get the label of the connected component containing a vertex.  Two
+     * vertices share a label exactly when a path joins them.  Labels are
+     * not reused, so a component split off by an edge deletion is given a
+     * fresh label.
+     * @param vertex Vertex
+     * @return int The component label
+     */
+    synchronized public int getComponent(final Vertex vertex) {
+        if (!isValid(vertex)) {
+            NoSuchElementException e = new NoSuchElementException("Graph.getComponent(" + vertex.toString() +
+                ") Vertex not found\n");
+            e.printStackTrace();
+            throw e;
         }
-        return i;
+        return components_.get(vertex).label;
     }
 
     /**
@@ -247,70 +537,99 @@ public class Graph extends Observable implements Cloneable {
      * @return Iterator An Iterator over the sub-Graphs in this Graph
      */
     synchronized public Iterator getSubGraphs() {
-        // subGraphs is a Vector of Graphs
-        Vector<Graph> subGraphs = new Vector<Graph>();
-        for (Iterator vertices = this.getAllVertices(); vertices.hasNext(); ) {
-            // from this vertex
-            final Vertex v = (Vertex)vertices.next();
-            // Does it exist in a subgraph?
-            boolean found = false;
-            for (Iterator sgs = subGraphs.iterator(); sgs.hasNext(); ) {
-                final Graph sg = (Graph)sgs.next();
-                if (sg.isValid(v)) {
-                    found = true;
-                }
-            }
-            // If the vertex is not found then
-            if (!found) {
-                // Create a new subGraph
-                final Graph newGraph = new Graph();
-                subGraphs.add(newGraph);
-                // Add the Vertex
-                newGraph.addVertex(v);
-                // Add all the connected vertices
-                for (Iterator connected = getConnectedComponents(v); connected.hasNext(); ) {
-                    final Vertex vc = (Vertex)connected.next();
-                    if (!newGraph.isValid(vc)) {
-                        newGraph.addVertex(vc);
-                    }
-                }
+        // one sub-Graph per component, in the order the components are first met
+        LinkedHashMap<Component, Graph> subGraphs = new LinkedHashMap<Component, Graph>();
+        for (Iterator<Vertex> vertices = verts_.iterator(); vertices.hasNext(); ) {
+            final Vertex v = vertices.next();
+            final Component c = components_.get(v);
+            Graph sg = subGraphs.get(c);
+            if (sg == null) {
+                sg = new Graph();
+                subGraphs.put(c, sg);
             }
+            sg.addVertex(v);
         }
         // Now generate the edges in the sub-graphs
-        for (Iterator sgs = subGraphs.iterator(); sgs.hasNext(); ) {
-            final Graph sg = (Graph)sgs.next();
-            for (Iterator vertices = sg.getAllVertices(); vertices.hasNext(); ) {
-                // from this vertex
-                final Vertex v = (Vertex)vertices.next();
-                for (Iterator connected = getConnectedComponents(v); connected.hasNext(); ) {
-                    final Vertex vc = (Vertex)connected.next();
-                    // and the edges that connect these vertices
-                    if (this.areConnected(v, vc)) {
-                        // Only add the connection if it it doesn't exist in sg
-                        if (!sg.areConnected(v, vc)) sg.addEdge(this.connection(v, vc));
+        for (Iterator<Edge> edges = edges_.iterator(); edges.hasNext(); ) {
+            final Edge edge = edges.next();
+            final Graph sg = subGraphs.get(components_.get(edge.getOneEnd()));
+            // Only add the connection if it it doesn't exist in sg
+            if (sg != null && !sg.areConnected(edge.getOneEnd(), edge.getOtherEnd())) {
+                sg.addEdge(edge);
+            }
+        }
+        return subGraphs.values().iterator();
+    }
+
+    /**
+     * Take an immutable compressed sparse row copy of this Graph, with the
+     * vertex positions, components and selected states.  The copy can be
+     * read without holding the Graph lock.
+     * @return GraphSnapshot
+     */
+    synchronized public GraphSnapshot snapshot() {
+        final int n = verts_.size();
+        final Vertex[] vertices = new Vertex[n];
+        final HashMap<Vertex, Integer> index = new HashMap<Vertex, Integer>();
+        final HashMap<Component, Integer> labels = new HashMap<Component, Integer>();
+        final int[] component = new int[n];
+        final boolean[] selected = new boolean[n];
+        int count = 0;
+        for (Iterator<Vertex> i = verts_.iterator(); i.hasNext(); count++) {
+            final Vertex v = i.next();
+            vertices[count] = v;
+            index.put(v, Integer.valueOf(count));
+            Integer label = labels.get(components_.get(v));
+            if (label == null) {
+                label = Integer.valueOf(labels.size());
+                labels.put(components_.get(v), label);
+            }
+            component[count] = label.intValue();
+            selected[count] = v.getSelected();
+        }
+        final int dimension = (n == 0) ? 0 : vertices[0].getPosition().length;
+        final double[] positions = new double[n * dimension];
+        final int[] offsets = new int[n + 1];
+        int[] targets = new int[2 * edges_.size()];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(vertices[i].getPosition(), 0, positions, i * dimension, dimension);
+            offsets[i] = k;
+            final Vector<Edge> incident = incidence(vertices[i]);
+            for (int j = 0; j < incident.size(); j++) {
+                final Integer t = index.get(incident.get(j).otherEnd(vertices[i]));
+                // skip edges dangling from deleted vertices
+                if (t != null) {
+                    if (k == targets.length) {
+                        final int[] grown = new int[2 * targets.length + 1];
+                        System.arraycopy(targets, 0, grown, 0, k);
+                        targets = grown;
                     }
+                    targets[k++] = t.intValue();
                 }
             }
         }
-        return subGraphs.iterator();
+        offsets[n] = k;
+        if (k != targets.length) {
+            final int[] trimmed = new int[k];
+            System.arraycopy(targets, 0, trimmed, 0, k);
+            targets = trimmed;
+        }
+        return new GraphSnapshot(vertices, index, offsets, targets, positions, dimension,
+                                 component, labels.size(), selected);
     }
 
     /**
-     * Get the neighbouring vertices to a given vertex
+     * Get the neighbouring vertices to a given vertex.  The iterator reads
+     * the incidence list of the vertex itself, not a copy, so the edges of
+     * the vertex must not be added or deleted while it is in use; collect
+     * the neighbours first.  Its remove() is unsupported.
      * @param vertex the vertex for which to gather the neighbouring vertices
      * @return an Iterator of vertices
      */
-    synchronized public Iterator getNeighbours(final Vertex vertex) {
-        Vector<Vertex> neighboursFound = new Vector<Vertex>();
+    synchronized public Iterator<Vertex> getNeighbours(final Vertex vertex) {
         // is vertex a part of this graph?
-        if (isValid(vertex)) {
-            for (Iterator i = getIncidentEdges(vertex); i.hasNext(); ) {
-                // get all the incident edges
-                // and add the vertex at the other end
-                neighboursFound.add(((Edge)i.next()).otherEnd(vertex));
-            }
-        }
-        else {
+        if (!isValid(vertex)) {
             NoSuchElementException e = new NoSuchElementException(
                                           "Graph.getNeighbours(" +
                                           vertex.toString() +
@@ -318,8 +637,8 @@ public class Graph extends Observable implements Cloneable {
                                           e.printStackTrace();
             throw e;
         }
-        // return an iterator over the vertices
-        return neighboursFound.iterator();
+        // return an iterator over the vertices at the other end of the incident edges
+        return new NeighbourIterator(incidence(vertex), vertex);
     }
 
     /**
@@ -329,47 +648,43 @@ public class Graph extends Observable implements Cloneable {
      * @return the edge connecting the two vertices, null if there is no edge
      */
     synchronized public Edge connection(final Vertex v1, final Vertex v2) {
-        Edge connection = null;
-        Vector<Edge> found = new Vector<Edge>();
         // ignore connection to self
-        if (v1 != v2) {
-            // are both the vertices in the graph?
-            if ((isValid(v1)) && (isValid(v2))) {
-                // get all the edges
-                for (Iterator i = edges_.iterator(); i.hasNext(); ) {
-                    final Edge edge = (Edge)i.next();
-                    // and if the edge contains both vertices, assume it is a connection!
-                    if ((edge.contains(v1)) && (edge.contains(v2))) {
-                        found.add(edge);
-                    }
-                }
-            } else {
-                System.err.print("Graph.connection(" + v1 + ", " + v2 + ")\n");
-                System.err.print("Graph.connection() failed validity checks of two vertices\n");
-                System.err.print("Graph.connection() Graph is\n" + this.toString() + "\n");
-                System.err.print("Graph.connection() Sub-Graphs are\n");
-                for (Iterator i = this.getSubGraphs(); i.hasNext(); ) {
-                    Graph g = (Graph)i.next();
-                    System.err.print("...Sub-Graph" + g.toString() + "\n");
+        if (v1 == v2) {
+            return null;
+        }
+        // are both the vertices in the graph?
+        if ((!isValid(v1)) || (!isValid(v2))) {
+            System.err.print("Graph.connection(" + v1 + ", " + v2 + ")\n");
+            System.err.print("Graph.connection() failed validity checks of two vertices\n");
+            System.err.print("Graph.connection() Graph is\n" + this.toString() + "\n");
+            System.err.print("Graph.connection() Sub-Graphs are\n");
+            for (Iterator i = this.getSubGraphs(); i.hasNext(); ) {
+                Graph g = (Graph)i.next();
+                System.err.print("...Sub-Graph" + g.toString() + "\n");
+            }
+            System.err.print("Graph.connection() Vertex Container is: " + verts_.toString() + "\n");
+            System.err.print("Graph.connection() Edge Container is: " + edges_.toString() + "\n");
+            RuntimeException e = new RuntimeException("areConnected");
+            e.printStackTrace();
+            throw e;
+        }
+        if (duplicateEdgeCheck) {
+            int found = 0;
+            for (Iterator<Edge> i = edges_.iterator(); i.hasNext(); ) {
+                final Edge edge = i.next();
+                // and if the edge contains both vertices, assume it is a connection!
+                if ((edge.contains(v1)) && (edge.contains(v2))) {
+                    found++;
                 }
-                System.err.print("Graph.connection() Vertex Container is: " + verts_.toString() + "\n");
-                System.err.print("Graph.connection() Edge Container is: " + edges_.toString() + "\n");
-                RuntimeException e = new RuntimeException("areConnected");
-                e.printStackTrace();
-                throw e;
             }
-            if (found.size() > 1) {
+            if (found > 1) {
                 RuntimeException e = new RuntimeException("areConnected(" + v1.toString() + ", " + v2.toString() +
                     " by more than one connection\n");
                 e.printStackTrace();
                 throw e;
-            } else if (found.size() == 1) {
-                connection = (Edge)found.firstElement();
-            } else {
-                return null;
             }
         }
-        return connection;
+        return pairs_.get(pair(v1, v2));
     }
 
     /**
@@ -424,6 +739,173 @@ public class Graph extends Observable implements Cloneable {
         return s.toString();
     }
 
+    // private - no javadoc
+    // Get the incidence list of a vertex, creating it on first use
+    private Vector<Edge> incidence(final Vertex vertex) {
+        Vector<Edge> incident = incidence_.get(vertex);
+        if (incident == null) {
+            incident = new Vector<Edge>(4);
+            incidence_.put(vertex, incident);
+        }
+        return incident;
+    }
+
+    // private - no javadoc
+    // Remove an edge from the incidence list of one of its ends
+    private void unlink(final Vertex vertex, final Edge edge) {
+        final Vector<Edge> incident = incidence_.get(vertex);
+        if (incident != null) {
+            incident.remove(edge);
+            if (incident.isEmpty() && !verts_.contains(vertex)) {
+                incidence_.remove(vertex);
+            }
+        }
+    }
+
+    // private - no javadoc
+    // Get the component of a vertex, starting a new one on first use
+    private Component component(final Vertex vertex) {
+        Component c = components_.get(vertex);
+        if (c == null) {
+            c = new Component(nextComponent++);
+            c.members.add(vertex);
+            components_.put(vertex, c);
+            numComponents++;
+        }
+        return c;
+    }
+
+    // private - no javadoc
+    // Join two components, relabelling the members of the smaller one
+    private void merge(final Component a, final Component b) {
+        if (a == b) {
+            return;
+        }
+        final Component large = (a.members.size() >= b.members.size()) ? a : b;
+        final Component small = (large == a) ? b : a;
+        for (Iterator<Vertex> i = small.members.iterator(); i.hasNext(); ) {
+            components_.put(i.next(), large);
+        }
+        large.members.addAll(small.members);
+        numComponents--;
+    }
+
+    // private - no javadoc
+    // Take a deleted vertex out of its component
+    private void release(final Vertex vertex) {
+        final Component c = components_.remove(vertex);
+        if (c != null) {
+            c.members.remove(vertex);
+            if (c.members.isEmpty()) {
+                numComponents--;
+            }
+        }
+    }
+
+    // private - no javadoc
+    // After deleting an edge between v1 and v2, search outwards from both
+    // ends in turn.  If the searches meet the component is intact, otherwise
+    // the search that runs dry first has found the smaller side, which is
+    // given a component of its own.  The cost is bounded by the smaller side.
+    // Deleted vertices are not followed, so they never rejoin a component.
+    private void split(final Vertex v1, final Vertex v2) {
+        if (v1 == v2 || components_.get(v1) == null || components_.get(v1) != components_.get(v2)) {
+            return;
+        }
+        final HashSet<Vertex> seen1 = new HashSet<Vertex>();
+        final HashSet<Vertex> seen2 = new HashSet<Vertex>();
+        final Vector<Vertex> queue1 = new Vector<Vertex>();
+        final Vector<Vertex> queue2 = new Vector<Vertex>();
+        seen1.add(v1);
+        queue1.add(v1);
+        seen2.add(v2);
+        queue2.add(v2);
+        int head1 = 0;
+        int head2 = 0;
+        Vector<Vertex> side = null;
+        while (side == null) {
+            if (head1 == queue1.size()) {
+                side = queue1;
+                break;
+            }
+            if (expand(queue1.get(head1++), seen1, seen2, queue1)) {
+                return;
+            }
+            if (head2 == queue2.size()) {
+                side = queue2;
+                break;
+            }
+            if (expand(queue2.get(head2++), seen2, seen1, queue2)) {
+                return;
+            }
+        }
+        final Component old = components_.get(v1);
+        final Component c = new Component(nextComponent++);
+        for (Iterator<Vertex> i = side.iterator(); i.hasNext(); ) {
+            final Vertex v = i.next();
+            old.members.remove(v);
+            c.members.add(v);
+            components_.put(v, c);
+        }
+        numComponents++;
+    }
+
+    // private - no javadoc
+    // One breadth first step of split(), true if it reaches the other search
+    private boolean expand(final Vertex vertex, final HashSet<Vertex> seen,
+                           final HashSet<Vertex> other, final Vector<Vertex> queue) {
+        final Vector<Edge> incident = incidence_.get(vertex);
+        if (incident != null) {
+            for (Iterator<Edge> i = incident.iterator(); i.hasNext(); ) {
+                final Vertex next = i.next().otherEnd(vertex);
+                // deleteVertex() can leave edges dangling from a deleted vertex
+                if (!verts_.contains(next)) {
+                    continue;
+                }
+                if (other.contains(next)) {
+                    return true;
+                }
+                if (seen.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        return false;
+    }
+
+    // private - no javadoc
+    // The key of an unordered pair of vertices, smaller id in the high word
+    private static Long pair(final Vertex v1, final Vertex v2) {
+        final int a = v1.getId();
+        final int b = v2.getId();
+        if (a < b) {
+            return Long.valueOf(((long)a << 32) | (b & 0xffffffffL));
+        }
+        return Long.valueOf(((long)b << 32) | (a & 0xffffffffL));
+    }
+
+    // private - no javadoc
+    // Drop an edge from the pair index, handing the key on to any
+    // other edge that still joins the same two vertices
+    private void unpair(final Edge edge) {
+        final Vertex v1 = edge.getOneEnd();
+        final Vertex v2 = edge.getOtherEnd();
+        final Long key = pair(v1, v2);
+        if (pairs_.get(key) == edge) {
+            pairs_.remove(key);
+            final Vector<Edge> incident = incidence_.get(v1);
+            if (incident != null) {
+                for (Iterator<Edge> i = incident.iterator(); i.hasNext(); ) {
+                    final Edge other = i.next();
+                    if (other.contains(v2)) {
+                        pairs_.put(key, other);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
     // private - no javadoc
     private boolean isValid(final Object o) {
         boolean valid = false;
@@ -458,110 +940,233 @@ public class Graph extends Observable implements Cloneable {
 
 
     /**
-     * Calculate the distance in the graph in L1
+     * Calculate the distance in the graph in L1, the number of edges on the
+     * shortest path.  For the distances between many vertices use
+     * HopDistances.allPairs(), which avoids a search per pair.
      * @param start Vertex
      * @param goal Vertex
-     * @return integer distance
+     * @return integer distance, 0 if there is no path between the vertices
      */
-    public int distance(final Vertex start, final Vertex goal) {
+    synchronized public int distance(final Vertex start, final Vertex goal) {
+        if (start == goal) {
+            return 0;
+        }
+        // breadth first, a level at a time
+        final HashSet<Vertex> seen = new HashSet<Vertex>();
+        Vector<Vertex> level = new Vector<Vertex>();
+        Vector<Vertex> next = new Vector<Vertex>();
+        seen.add(start);
+        level.add(start);
+        for (int hops = 1; !level.isEmpty(); hops++) {
+            next.clear();
+            for (Iterator<Vertex> i = level.iterator(); i.hasNext(); ) {
+                for (Iterator<Vertex> j = this.getNeighbours(i.next()); j.hasNext(); ) {
+                    final Vertex child = j.next();
+                    if (child == goal) {
+                        return hops;
+                    }
+                    if (seen.add(child)) {
+                        next.add(child);
+                    }
+                }
+            }
+            final Vector<Vertex> swap = level;
+            level = next;
+            next = swap;
+        }
+        return 0;  // no path between vertices;
+    }
 
-      // Cleaer the list of paths
-      distance_pathq.clear();
 
-      // and begin with a single path going nowhere
-      distance_path.clear();
-      distance_path.add(start);
-      // and store in the list of paths
-      distance_pathq.add(distance_path);
+    /**
+     * Perform a depth first search on the graph, begining at a specified vertex
+     * @param vertex The vertex from where to begin the search.
+     * @return An Iterator of connected vertices
+     *
+     * The search runs on an explicit stack of dense vertex numbers and marks
+     * the vertices it has seen in a bitset of its own, so it does not recurse,
+     * does not touch the visited state of the vertices and allocates nothing
+     * per vertex visited.
+     */
+    synchronized public Iterator<Vertex> getConnectedComponents(final Vertex vertex) {
+        final int start = indexOf(vertex);
+        if (start < 0) {
+            System.err.print("Graph.getConnectedComponents() called\n");
+            System.err.print("Graph is\n" + this.toString());
+            NoSuchElementException e = new NoSuchElementException("Graph doesn't contain Vertex " + vertex);
+            e.printStackTrace();
+            throw e;
+        }
+        final BitSet seen = new BitSet(indexed_.size());
+        final int[] stack = new int[indexed_.size()];
+        int top = 0;
+        seen.set(start);
+        stack[top++] = start;
+        while (top > 0) {
+            final Vertex v = indexed_.get(stack[--top]);
+            final Vector<Edge> incident = incidence_.get(v);
+            for (int k = 0; k < incident.size(); k++) {
+                // vertices deleted from under an edge have no number
+                final Integer next = index_.get(incident.get(k).otherEnd(v));
+                if (next != null && !seen.get(next.intValue())) {
+                    seen.set(next.intValue());
+                    stack[top++] = next.intValue();
+                }
+            }
+        }
+        final Vector<Vertex> visited = new Vector<Vertex>(seen.cardinality());
+        for (Iterator<Vertex> i = verts_.iterator(); i.hasNext(); ) {
+            final Vertex v = i.next();
+            if (seen.get(index_.get(v).intValue())) {
+                visited.add(v);
+            }
+        }
+        return visited.iterator();
+    }
 
-      // Then recurse bfs on the pathq
-      if ( bfs(goal, distance_pathq) ) {
-        return ((LinkedList) distance_pathq.getFirst()).size() - 1;
-      } else {
-        return 0;  // no path between vertices;
-      }
+    /**
+     * The dense number of a vertex of this graph.  Numbers run from 0 up to
+     * indexBound() and the number of a deleted vertex is given to the next
+     * vertex added, so the numbers suit arrays and bitsets indexed by vertex.
+     * @param vertex Vertex
+     * @return int the number, -1 if the vertex is not in this graph
+     */
+    synchronized public int indexOf(final Vertex vertex) {
+        final Integer i = index_.get(vertex);
+        return (i == null) ? -1 : i.intValue();
     }
 
+    /**
+     * The vertex holding a dense number
+     * @param index int 0 &lt;= index &lt; indexBound()
+     * @return Vertex the vertex, null if no vertex holds the number
+     */
+    synchronized public Vertex vertexAt(final int index) {
+        return indexed_.get(index);
+    }
 
+    /**
+     * One more than the largest dense number in use
+     * @return int the size of an array to index by vertex number
+     */
+    synchronized public int indexBound() {
+        return indexed_.size();
+    }
 
-    final private boolean foundGoal(Vertex goal, LinkedList<LinkedList> pathq) {
-      LinkedList path = (LinkedList) pathq.getFirst();
-      Vertex head = (Vertex) path.getFirst();
-      if ( head == goal ) {
-        return true;
-      } else {
-        return false;
-      }
+    // private - no javadoc
+    // Give a new vertex a dense number, reusing a freed number if there is one
+    private void number(final Vertex vertex) {
+        final int i;
+        if (numFreeIndex > 0) {
+            i = freeIndex[--numFreeIndex];
+            indexed_.set(i, vertex);
+        } else {
+            i = indexed_.size();
+            indexed_.add(vertex);
+        }
+        index_.put(vertex, Integer.valueOf(i));
     }
 
+    // private - no javadoc
+    // Free the dense number of a deleted vertex
+    private void unnumber(final Vertex vertex) {
+        final Integer i = index_.remove(vertex);
+        if (i != null) {
+            indexed_.set(i.intValue(), null);
+            if (numFreeIndex == freeIndex.length) {
+                final int[] grown = new int[2 * freeIndex.length];
+                System.arraycopy(freeIndex, 0, grown, 0, numFreeIndex);
+                freeIndex = grown;
+            }
+            freeIndex[numFreeIndex++] = i.intValue();
+        }
+    }
 
-    final private boolean bfs(Vertex goal, LinkedList<LinkedList> pathq) {
+    /** A connected component: its label and the vertices it holds */
+    protected static final class Component {
+        final int label;
+        final HashSet<Vertex> members = new HashSet<Vertex>();
 
-      // if pathq is empty - failed
-      while ( !pathq.isEmpty() ) {
+        Component(final int label) {
+            this.label = label;
+        }
+    }
 
-        if (foundGoal(goal, pathq)) return true;
+    /**
+     * Read only iterator over the incidence list of a vertex.  Walking the list
+     * in place saves gathering the edges or neighbours into a fresh container.
+     */
+    private static abstract class IncidenceIterator<T> implements Iterator<T> {
+        protected final Vector<Edge> incident;
+        private int next = 0;
 
-        LinkedList path = (LinkedList) pathq.removeFirst();
+        IncidenceIterator(final Vector<Edge> incident) {
+            this.incident = incident;
+        }
 
-        Iterator i = this.getNeighbours( (Vertex) path.getFirst() );
-        while (i.hasNext()) {
-            Vertex child = (Vertex) i.next();
-            LinkedList<Vertex> newpath = new LinkedList<Vertex>();
-            for (ListIterator members = path.listIterator(); members.hasNext(); ){
-              newpath.add( (Vertex) members.next() );
-            }
-            // Don't backtrack
-            if ( !newpath.contains(child) )  {
-              newpath.addFirst(child);
-              if ( !pathq.contains(newpath) ){
-                pathq.addLast(newpath);
-              }
-            } else {
-              newpath = null;
+        public boolean hasNext() {
+            return next < incident.size();
+        }
+
+        protected Edge nextEdge() {
+            if (next >= incident.size()) {
+                throw new NoSuchElementException();
             }
+            return incident.get(next++);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Graph incidence lists are read only");
         }
-      }
-      return false;
     }
 
+    /** Read only iterator over a copy of the vertices or edges */
+    private static final class ArrayIterator<T> implements Iterator<T> {
+        private final T[] items;
+        private int next = 0;
 
-    /**
-     * Perform a depth first search on the graph, begining at a specified vertex
-     * @param vertex The vertex from where to begin the search.
-     * @return An Iterator of connected vertices
-     *
-     * Use a depth first search dependent on the set/get visisted state
-     * of the vertices
-     */
-    synchronized public Iterator<Vertex> getConnectedComponents(final Vertex vertex) {
-        Vector<Vertex> visited = new Vector<Vertex>();
-        resetVisitState();
-        DFS(vertex);
-        for (Iterator<Vertex> i = getAllVertices(); i.hasNext(); ) {
-            Vertex v = (Vertex)i.next();
-            if (v.getVisited()) {
-                visited.add(v);
+        ArrayIterator(final T[] items) {
+            this.items = items;
+        }
+
+        public boolean hasNext() {
+            return next < items.length;
+        }
+
+        public T next() {
+            if (next >= items.length) {
+                throw new NoSuchElementException();
             }
+            return items[next++];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Graph copies are read only");
         }
-        return visited.iterator();
     }
 
-    // private - no javadoc
-    private void DFS(Vertex vertex) {
-        vertex.setVisited(true);
-        for (Iterator neighbours = getNeighbours(vertex); neighbours.hasNext(); ) {
-            Vertex nextNeighbour = (Vertex)neighbours.next();
-            if (!nextNeighbour.getVisited()) {
-                DFS(nextNeighbour);
-            }
+    /** Iterates the edges incident to a vertex */
+    private static final class IncidentEdgeIterator extends IncidenceIterator<Edge> {
+        IncidentEdgeIterator(final Vector<Edge> incident) {
+            super(incident);
+        }
+
+        public Edge next() {
+            return nextEdge();
         }
     }
 
-    // private - no javadoc
-    private void resetVisitState() {
-        for (Iterator i = getAllVertices(); i.hasNext(); ) {
-            ((Vertex)i.next()).setVisited(false);
+    /** Iterates the vertices at the other end of the edges incident to a vertex */
+    private static final class NeighbourIterator extends IncidenceIterator<Vertex> {
+        private final Vertex from;
+
+        NeighbourIterator(final Vector<Edge> incident, final Vertex from) {
+            super(incident);
+            this.from = from;
+        }
+
+        public Vertex next() {
+            return nextEdge().otherEnd(from);
         }
     }
 }
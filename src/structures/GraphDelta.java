@@ -0,0 +1,140 @@
+package structures;
+
+/**
+ * <p>Title: Competitive Learning</p>
+ * <p>Description: A summary of the changes made to a Graph.  A Graph passes
+ * one of these to its Observers with every change notification, either for a
+ * single add or delete, or for a whole batch of them between
+ * Graph.beginBatch() and Graph.commitBatch().</p>
+ * @version 1.0
+ */
+public final class GraphDelta {
+
+    /** Number of vertices added */
+    private int verticesAdded = 0;
+
+    /** Number of vertices deleted */
+    private int verticesDeleted = 0;
+
+    /** Number of edges added */
+    private int edgesAdded = 0;
+
+    /** Number of edges deleted */
+    private int edgesDeleted = 0;
+
+    /** Size of the Graph once the changes were made */
+    private int numVertices = 0;
+    private int numEdges = 0;
+    private int numSubGraphs = 0;
+
+    /** Only a Graph makes these */
+    GraphDelta() {
+    }
+
+    // package - no javadoc
+    GraphDelta vertexAdded() {
+        verticesAdded++;
+        return this;
+    }
+
+    // package - no javadoc
+    GraphDelta vertexDeleted() {
+        verticesDeleted++;
+        return this;
+    }
+
+    // package - no javadoc
+    GraphDelta edgeAdded() {
+        edgesAdded++;
+        return this;
+    }
+
+    // package - no javadoc
+    GraphDelta edgeDeleted() {
+        edgesDeleted++;
+        return this;
+    }
+
+    // package - no javadoc
+    // Record the size of the Graph the changes left behind
+    GraphDelta result(final int vertices, final int edges, final int subGraphs) {
+        numVertices = vertices;
+        numEdges = edges;
+        numSubGraphs = subGraphs;
+        return this;
+    }
+
+    /**
+     * The number of vertices added
+     * @return int
+     */
+    public int getVerticesAdded() {
+        return verticesAdded;
+    }
+
+    /**
+     * The number of vertices deleted
+     * @return int
+     */
+    public int getVerticesDeleted() {
+        return verticesDeleted;
+    }
+
+    /**
+     * The number of edges added
+     * @return int
+     */
+    public int getEdgesAdded() {
+        return edgesAdded;
+    }
+
+    /**
+     * The number of edges deleted
+     * @return int
+     */
+    public int getEdgesDeleted() {
+        return edgesDeleted;
+    }
+
+    /**
+     * The number of vertices in the Graph after the changes
+     * @return int
+     */
+    public int numVertices() {
+        return numVertices;
+    }
+
+    /**
+     * The number of edges in the Graph after the changes
+     * @return int
+     */
+    public int numEdges() {
+        return numEdges;
+    }
+
+    /**
+     * The number of connected sub-graphs in the Graph after the changes
+     * @return int
+     */
+    public int numSubGraphs() {
+        return numSubGraphs;
+    }
+
+    /**
+     * Were any changes made at all
+     * @return boolean true if nothing was added or deleted
+     */
+    public boolean isEmpty() {
+        return verticesAdded == 0 && verticesDeleted == 0 && edgesAdded == 0 && edgesDeleted == 0;
+    }
+
+    /**
+     * toString() overrides the Object method
+     * @return String
+     */
+    public String toString() {
+        return "v+" + verticesAdded + " v-" + verticesDeleted +
+               " e+" + edgesAdded + " e-" + edgesDeleted +
+               " (" + numVertices + " v, " + numEdges + " e, " + numSubGraphs + " sub-graphs)";
+    }
+}
@@ -0,0 +1,196 @@
+package structures;
+
+import java.util.HashMap;
+
+/**
+ * <p>Title: Competitive Learning</p>
+ * <p>Description: An immutable copy of a Graph in compressed sparse row form.
+ * Vertices are numbered 0 to numVertices()-1 in the order the Graph holds them.
+ * The neighbours of vertex i are target(k) for offset(i) &lt;= k &lt; offset(i+1),
+ * so every edge appears once from each end.  Positions are copied into one
+ * contiguous array, dimension values per vertex.</p>
+ * <p>Once taken, a snapshot can be read from any thread without locking the
+ * Graph, and never touches the Vertex or Edge objects it was taken from.</p>
+ * @version 1.0
+ * @version 1.1 withCurrentPositions() to follow the training between changes
+ */
+public final class GraphSnapshot {
+
+    /** The vertices the snapshot was taken from, for mapping results back */
+    private final Vertex[] vertices;
+
+    /** Vertex to number lookup */
+    private final HashMap<Vertex, Integer> index;
+
+    /** Start of the neighbours of each vertex in targets, n+1 entries */
+    final int[] offsets;
+
+    /** Neighbour numbers of every vertex, laid end to end */
+    final int[] targets;
+
+    /** Vertex positions, dimension values per vertex */
+    final double[] positions;
+
+    /** The dimension of the vertex positions */
+    final int dimension;
+
+    /** The connected component of each vertex, numbered from 0 */
+    final int[] component;
+
+    /** The number of connected components */
+    final int numComponents;
+
+    /** The selected state of each vertex */
+    final boolean[] selected;
+
+    /** Graph.snapshot() builds these */
+    GraphSnapshot(final Vertex[] vertices, final HashMap<Vertex, Integer> index,
+                  final int[] offsets, final int[] targets,
+                  final double[] positions, final int dimension,
+                  final int[] component, final int numComponents,
+                  final boolean[] selected) {
+        this.vertices = vertices;
+        this.index = index;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.positions = positions;
+        this.dimension = dimension;
+        this.component = component;
+        this.numComponents = numComponents;
+        this.selected = selected;
+    }
+
+    /**
+     * A copy of this snapshot with the positions read again from the vertices.
+     * Training moves the vertices without changing the topology, so a reader
+     * can keep a published snapshot and refresh just its positions.  The
+     * topology arrays are shared, and the Graph lock is not taken.
+     * @return GraphSnapshot
+     */
+    public GraphSnapshot withCurrentPositions() {
+        final double[] current = new double[positions.length];
+        for (int i = 0; i < vertices.length; i++) {
+            System.arraycopy(vertices[i].getPosition(), 0, current, i * dimension, dimension);
+        }
+        return new GraphSnapshot(vertices, index, offsets, targets, current, dimension,
+                                 component, numComponents, selected);
+    }
+
+    /**
+     * The number of vertices in the snapshot
+     * @return int
+     */
+    public int numVertices() {
+        return vertices.length;
+    }
+
+    /**
+     * The number of edges in the snapshot
+     * @return int
+     */
+    public int numEdges() {
+        return targets.length / 2;
+    }
+
+    /**
+     * The dimension of the vertex positions
+     * @return int
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * The degree of vertex i
+     * @param i int vertex number
+     * @return int
+     */
+    public int degree(final int i) {
+        return offsets[i + 1] - offsets[i];
+    }
+
+    /**
+     * The start of the neighbours of vertex i, for 0 &lt;= i &lt;= numVertices()
+     * @param i int vertex number
+     * @return int index into the targets
+     */
+    public int offset(final int i) {
+        return offsets[i];
+    }
+
+    /**
+     * The vertex number held at position k of the targets
+     * @param k int index into the targets
+     * @return int vertex number
+     */
+    public int target(final int k) {
+        return targets[k];
+    }
+
+    /**
+     * A coordinate of the position of vertex i
+     * @param i int vertex number
+     * @param d int dimension
+     * @return double
+     */
+    public double position(final int i, final int d) {
+        return positions[i * dimension + d];
+    }
+
+    /**
+     * A copy of the position of vertex i
+     * @param i int vertex number
+     * @return double[]
+     */
+    public double[] getPosition(final int i) {
+        final double[] pos = new double[dimension];
+        System.arraycopy(positions, i * dimension, pos, 0, dimension);
+        return pos;
+    }
+
+    /**
+     * The connected component of vertex i, numbered from 0 in the order the
+     * components are first met
+     * @param i int vertex number
+     * @return int
+     */
+    public int getComponent(final int i) {
+        return component[i];
+    }
+
+    /**
+     * The number of connected components
+     * @return int
+     */
+    public int numComponents() {
+        return numComponents;
+    }
+
+    /**
+     * The selected state of vertex i when the snapshot was taken
+     * @param i int vertex number
+     * @return boolean
+     */
+    public boolean getSelected(final int i) {
+        return selected[i];
+    }
+
+    /**
+     * The Vertex that vertex i was taken from
+     * @param i int vertex number
+     * @return Vertex
+     */
+    public Vertex getVertex(final int i) {
+        return vertices[i];
+    }
+
+    /**
+     * The number of a Vertex in this snapshot
+     * @param vertex Vertex
+     * @return int vertex number, -1 if the vertex was not in the Graph
+     */
+    public int indexOf(final Vertex vertex) {
+        final Integer i = index.get(vertex);
+        return (i == null) ? -1 : i.intValue();
+    }
+}
@@ -0,0 +1,184 @@
+package structures;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Title: Competitive Learning</p>
+ * <p>Description: All-pairs shortest hop distances over a Graph.  The searches
+ * run over the compact int adjacency of a GraphSnapshot, one breadth first
+ * search per source over plain int arrays.  The sources can be shared out
+ * over the common ForkJoinPool, as the searches are independent, so a
+ * refresh of the topology measure starts no threads of its own.</p>
+ * @version 1.0
+ * @version 1.1 Searches a GraphSnapshot
+ * @version 1.2 Shares the common pool rather than starting a pool a call
+ */
+public final class HopDistances {
+
+    /** The adjacency to search */
+    private final GraphSnapshot graph;
+
+    /** Snapshot numbers of the vertices asked for */
+    private final int[] sources;
+
+    /** Row and column of each snapshot vertex in the result, -1 if not asked for */
+    private final int[] column;
+
+    // private - no javadoc
+    private HopDistances(final GraphSnapshot graph, final int[] sources) {
+        this.graph = graph;
+        this.sources = sources;
+        column = new int[graph.numVertices()];
+        Arrays.fill(column, -1);
+        for (int i = 0; i < sources.length; i++) {
+            column[sources[i]] = i;
+        }
+    }
+
+    /**
+     * Calculate the hop distance between every pair of the given vertices.
+     * As with Graph.distance(), a vertex is 0 hops from itself and from any
+     * vertex it has no path to.
+     * @param graph The Graph to measure over
+     * @param vertices The vertices to measure between, all members of graph
+     * @param parallel Share the sources out over the processors
+     * @return int[][] distances[i][j] between vertices[i] and vertices[j]
+     */
+    public static int[][] allPairs(final Graph graph, final Vertex[] vertices, final boolean parallel) {
+        return allPairs(graph.snapshot(), vertices, parallel);
+    }
+
+    /**
+     * Calculate the hop distance between every pair of the given vertices
+     * of a snapshot.  Vertices outside the snapshot are 0 hops from everything.
+     * @param graph The GraphSnapshot to measure over
+     * @param vertices The vertices to measure between
+     * @param parallel Share the sources out over the processors
+     * @return int[][] distances[i][j] between vertices[i] and vertices[j]
+     */
+    public static int[][] allPairs(final GraphSnapshot graph, final Vertex[] vertices, final boolean parallel) {
+        final int[] sources = new int[vertices.length];
+        int found = 0;
+        for (int i = 0; i < vertices.length; i++) {
+            sources[i] = graph.indexOf(vertices[i]);
+            if (sources[i] >= 0) {
+                found++;
+            }
+        }
+        if (found == vertices.length) {
+            return new HopDistances(graph, sources).solve(parallel);
+        }
+        // measure the vertices that are there, and leave the rest at 0
+        final int[] present = new int[found];
+        for (int i = 0, j = 0; i < vertices.length; i++) {
+            if (sources[i] >= 0) {
+                present[j++] = sources[i];
+            }
+        }
+        final int[][] measured = new HopDistances(graph, present).solve(parallel);
+        final int[][] distances = new int[vertices.length][vertices.length];
+        for (int i = 0, mi = 0; i < vertices.length; i++) {
+            if (sources[i] >= 0) {
+                for (int j = 0, mj = 0; j < vertices.length; j++) {
+                    if (sources[j] >= 0) {
+                        distances[i][j] = measured[mi][mj++];
+                    }
+                }
+                mi++;
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Calculate the hop distance between every pair of vertices of a
+     * snapshot, in snapshot order
+     * @param graph The GraphSnapshot to measure over
+     * @param parallel Share the sources out over the processors
+     * @return int[][] distances[i][j] between vertices i and j
+     */
+    public static int[][] allPairs(final GraphSnapshot graph, final boolean parallel) {
+        final int[] sources = new int[graph.numVertices()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = i;
+        }
+        return new HopDistances(graph, sources).solve(parallel);
+    }
+
+    // private - no javadoc
+    private int[][] solve(final boolean parallel) {
+        final int n = sources.length;
+        final int[][] distances = new int[n][];
+        final int threads = parallel ? Math.min(Runtime.getRuntime().availableProcessors(), n) : 1;
+        if (threads <= 1) {
+            search(distances, 0, 1);
+            return distances;
+        }
+        final ForkJoinPool pool = ForkJoinPool.commonPool();
+        try {
+            final Vector<Future<Object>> results = new Vector<Future<Object>>(threads);
+            for (int t = 0; t < threads; t++) {
+                final int first = t;
+                results.add(pool.submit(new Callable<Object>() {
+                    public Object call() {
+                        search(distances, first, threads);
+                        return null;
+                    }
+                }));
+            }
+            for (Iterator<Future<Object>> i = results.iterator(); i.hasNext(); ) {
+                i.next().get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("HopDistances interrupted", e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException("HopDistances failed", e.getCause());
+        }
+        return distances;
+    }
+
+    // private - no javadoc
+    // Breadth first search from every stride'th source, starting at first
+    private void search(final int[][] distances, final int first, final int stride) {
+        final int[] offsets = graph.offsets;
+        final int[] targets = graph.targets;
+        final int size = graph.numVertices();
+        final int[] depth = new int[size];
+        final int[] queue = new int[size];
+        for (int s = first; s < sources.length; s += stride) {
+            Arrays.fill(depth, -1);
+            depth[sources[s]] = 0;
+            queue[0] = sources[s];
+            int head = 0;
+            int tail = 1;
+            while (head < tail) {
+                final int v = queue[head++];
+                final int d = depth[v] + 1;
+                for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                    final int w = targets[k];
+                    if (depth[w] < 0) {
+                        depth[w] = d;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+            final int[] row = new int[sources.length];
+            for (int v = 0; v < size; v++) {
+                // no path between vertices leaves the distance at 0
+                if (depth[v] > 0 && column[v] >= 0) {
+                    row[column[v]] = depth[v];
+                }
+            }
+            distances[s] = row;
+        }
+    }
+}
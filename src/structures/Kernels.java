@@ -0,0 +1,111 @@
+package structures;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * <p>Title: Competitive Learning</p>
+ * <p>Description: The inner loops of training: the distance between two
+ * weight vectors, and the adaptation w += rate * (x - w) of a weight vector
+ * towards an input.  This class runs them as plain scalar loops.</p>
+ * <p>vectorized() returns the SIMD version from structures.simd, built on the
+ * incubating jdk.incubator.vector module, when that module was there to build
+ * against and has been added to the running JVM with
+ * --add-modules jdk.incubator.vector.  Otherwise it falls back to this class.
+ * The vector adaptation gives the same weights as the scalar loop, as each
+ * lane does the same arithmetic.  The vector distances add up the coordinates
+ * in a different order, so they can differ from the scalar ones in the last
+ * bits.</p>
+ * @version 1.0
+ */
+public class Kernels {
+
+    /** The class holding the vector kernels, loaded by name as it may not be built */
+    private static final String VECTOR_KERNELS = "structures.simd.VectorKernels";
+
+    /** Reports whether the vector kernels could be loaded */
+    private static final Log log = LogFactory.getLog(Kernels.class);
+
+    /** The scalar kernels */
+    private static final Kernels SCALAR = new Kernels();
+
+    /** The vector kernels, or the scalar ones if they can not be loaded */
+    private static Kernels vector = null;
+
+    // protected - no javadoc
+    protected Kernels() {
+    }
+
+    /**
+     * The scalar kernels
+     * @return Kernels
+     */
+    public static Kernels scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * The vector kernels where the Vector API can be used, the scalar ones
+     * otherwise
+     * @return Kernels
+     */
+    public static synchronized Kernels vectorized() {
+        if (vector == null) {
+            vector = SCALAR;
+            try {
+                vector = Class.forName(VECTOR_KERNELS).asSubclass(Kernels.class)
+                         .getDeclaredConstructor().newInstance();
+            }
+            catch (java.lang.reflect.InvocationTargetException e) {
+                // built, but the constructor could not reach jdk.incubator.vector
+                log.info("Vector kernels need --add-modules jdk.incubator.vector, using scalar kernels: " + e.getCause());
+            }
+            catch (ReflectiveOperationException e) {
+                // not built, so stay scalar
+                log.info("Vector kernels not built, using scalar kernels: " + e);
+            }
+            catch (LinkageError e) {
+                // built, but jdk.incubator.vector is not in this JVM
+                log.info("Vector kernels need --add-modules jdk.incubator.vector, using scalar kernels: " + e);
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * The distance kernel for a Minkowski power
+     * @param power double L norm, where 0.0 < power <= Double.MAX_VALUE
+     * @return DistanceKernel
+     */
+    public DistanceKernel distance(final double power) {
+        return DistanceKernel.forPower(power);
+    }
+
+    /**
+     * Move a weight vector towards an input, w += rate * (x - w)
+     * @param w double[] the weight vector, updated in place
+     * @param x double[] the input
+     * @param rate double the learning rate
+     */
+    public void adapt(final double[] w, final double[] x, final double rate) {
+        for (int i = 0; i < w.length; i++) {
+            w[i] = w[i] + (rate * (x[i] - w[i]));
+        }
+    }
+
+    /**
+     * Are these the vector kernels
+     * @return boolean
+     */
+    public boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * toString() overrides the Object method
+     * @return String
+     */
+    public String toString() {
+        return "scalar";
+    }
+}
@@ -1,5 +1,7 @@
 package structures;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * <p>Title: Competitive Learning</p>
  * <p>Description: A simple Traversable and Selectable abstract Vertex for
@@ -8,14 +10,22 @@ package structures;
  * <p>Company: University of Hertfordshire</p>
  * @author Kevin Doherty (e-mail K.A.J.Doherty@herts.ac.uk)
  * @version 1.0
+ * @version 1.1 Each Vertex carries a unique id
  */
 public class Vertex implements Traversable, Selectable, Cloneable {
     /** @param position Where to construct this Vertex */
     public Vertex(final double[] position, final String label) {
+        this.id = nextId.getAndIncrement();
         this.setPosition(position);
         this.setLabel(label);
     }
 
+    /** Source of the unique Vertex ids */
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    /** The unique id of this Vertex */
+    private int id;
+
     /** The weight vector */
     protected double[] pos;
 
@@ -35,11 +45,21 @@ public class Vertex implements Traversable, Selectable, Cloneable {
             e.printStackTrace();
             throw new Error("This should not occur since we implement Cloneable");
         }
+        ((Vertex)clone).id = nextId.getAndIncrement();
         ((Vertex)clone).setPosition((double[]) pos.clone());
         ((Vertex)clone).setLabel(label.toString());
         return clone;
     }
 
+    /**
+     * Get the unique id of this Vertex.  Ids are handed out in order of
+     * construction, and a clone is given an id of its own.
+     * @return int
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Set the label
      * @param label String
@@ -0,0 +1,176 @@
+package structures.simd;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import structures.DistanceKernel;
+import structures.Kernels;
+
+/**
+ * <p>Title: Competitive Learning</p>
+ * <p>Description: The training kernels on the JDK Vector API.  Each loop runs
+ * over as many coordinates at a time as the preferred vector shape of the
+ * processor holds, then finishes the remainder one coordinate at a time.</p>
+ * <p>This class needs the incubating jdk.incubator.vector module to build and
+ * to run, so it is only built when the JDK has the module, and is only reached
+ * by name through Kernels.vectorized().</p>
+ * <p>The vector distances do not abandon: distance(a, b, limit) sums the
+ * full distance.  Checking the limit needs a reduction across the lanes,
+ * and a check every 64 dimensions made the winner searches slower, not
+ * faster, at every dimension tried from 16 to 256.  Early abandoning is
+ * left to the ordered scalar kernels of DIMENSION_ORDER, which take the
+ * place of these when both are set.</p>
+ * @version 1.0
+ * @version 1.1 The distances sum in full, documented
+ */
+public final class VectorKernels extends Kernels {
+
+    /** The widest vector shape the processor handles well */
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /** The L1 distance */
+    private static final DistanceKernel L1 = new Manhattan();
+
+    /** The squared Euclidean distance */
+    private static final DistanceKernel SQUARED_L2 = new SquaredEuclidean();
+
+    /** The L infinity distance */
+    private static final DistanceKernel L_INFINITY = new Chebyshev();
+
+    /**
+     * Kernels.vectorized() makes these
+     */
+    public VectorKernels() {
+        // touch the module now, so a missing module fails here and not mid-training
+        SPECIES.length();
+    }
+
+    /**
+     * The distance kernel for a Minkowski power.  L1, squared L2 and L
+     * infinity are vectorized, other powers use the scalar kernel.
+     * @param power double L norm, where 0.0 < power <= Double.MAX_VALUE
+     * @return DistanceKernel
+     */
+    public DistanceKernel distance(final double power) {
+        final DistanceKernel scalar = DistanceKernel.forPower(power);
+        if (scalar == DistanceKernel.SQUARED_L2) {
+            return SQUARED_L2;
+        } else if (scalar == DistanceKernel.L1) {
+            return L1;
+        } else if (scalar == DistanceKernel.L_INFINITY) {
+            return L_INFINITY;
+        }
+        return scalar;
+    }
+
+    /**
+     * Move a weight vector towards an input, w += rate * (x - w).  Each lane
+     * does the same operations as the scalar loop, so the weights are the same.
+     * @param w double[] the weight vector, updated in place
+     * @param x double[] the input
+     * @param rate double the learning rate
+     */
+    public void adapt(final double[] w, final double[] x, final double rate) {
+        final int bound = SPECIES.loopBound(w.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            final DoubleVector wv = DoubleVector.fromArray(SPECIES, w, i);
+            final DoubleVector xv = DoubleVector.fromArray(SPECIES, x, i);
+            wv.add(xv.sub(wv).mul(rate)).intoArray(w, i);
+        }
+        for (; i < w.length; i++) {
+            w[i] = w[i] + (rate * (x[i] - w[i]));
+        }
+    }
+
+    /**
+     * Are these the vector kernels
+     * @return boolean
+     */
+    public boolean isVectorized() {
+        return true;
+    }
+
+    /**
+     * toString() overrides the Object method
+     * @return String
+     */
+    public String toString() {
+        return "vector " + SPECIES;
+    }
+
+    /** Sum of absolute differences */
+    private static final class Manhattan extends DistanceKernel {
+        Manhattan() {
+            super(1.0d);
+        }
+
+        public double distance(final double[] a, final double[] b) {
+            final int bound = SPECIES.loopBound(a.length);
+            DoubleVector sum = DoubleVector.zero(SPECIES);
+            int n = 0;
+            for (; n < bound; n += SPECIES.length()) {
+                final DoubleVector diff = DoubleVector.fromArray(SPECIES, a, n)
+                                          .sub(DoubleVector.fromArray(SPECIES, b, n));
+                sum = sum.add(diff.abs());
+            }
+            double d = sum.reduceLanes(VectorOperators.ADD);
+            for (; n < a.length; n++) {
+                final double diff = a[n] - b[n];
+                d += (diff < 0.0d) ? -diff : diff;
+            }
+            return d;
+        }
+    }
+
+    /** Sum of squared differences, left without the root */
+    private static final class SquaredEuclidean extends DistanceKernel {
+        SquaredEuclidean() {
+            super(2.0d);
+        }
+
+        public double distance(final double[] a, final double[] b) {
+            final int bound = SPECIES.loopBound(a.length);
+            DoubleVector sum = DoubleVector.zero(SPECIES);
+            int n = 0;
+            for (; n < bound; n += SPECIES.length()) {
+                final DoubleVector diff = DoubleVector.fromArray(SPECIES, a, n)
+                                          .sub(DoubleVector.fromArray(SPECIES, b, n));
+                sum = sum.add(diff.mul(diff));
+            }
+            double d = sum.reduceLanes(VectorOperators.ADD);
+            for (; n < a.length; n++) {
+                final double diff = a[n] - b[n];
+                d += diff * diff;
+            }
+            return d;
+        }
+    }
+
+    /** Largest absolute difference, from Double.MIN_VALUE as in Minkowski */
+    private static final class Chebyshev extends DistanceKernel {
+        Chebyshev() {
+            super(Double.POSITIVE_INFINITY);
+        }
+
+        public double distance(final double[] a, final double[] b) {
+            final int bound = SPECIES.loopBound(a.length);
+            DoubleVector max = DoubleVector.broadcast(SPECIES, Double.MIN_VALUE);
+            int n = 0;
+            for (; n < bound; n += SPECIES.length()) {
+                final DoubleVector diff = DoubleVector.fromArray(SPECIES, a, n)
+                                          .sub(DoubleVector.fromArray(SPECIES, b, n));
+                max = max.max(diff.abs());
+            }
+            double d = max.reduceLanes(VectorOperators.MAX);
+            for (; n < a.length; n++) {
+                final double scratch = Math.abs(a[n] - b[n]);
+                if (scratch > d) {
+                    d = scratch;
+                }
+            }
+            return d;
+        }
+    }
+}
@@ -52,7 +52,12 @@ public class DataView extends JPanel {
     }
 
 
-    final public void update(Graph network, Graph delaunay) {
+    /**
+     * Display new copies of the network and its triangulation
+     * @param network GraphSnapshot
+     * @param delaunay GraphSnapshot
+     */
+    final public void update(GraphSnapshot network, GraphSnapshot delaunay) {
       o.trypaint(network, delaunay);
     }
 
@@ -21,13 +21,15 @@ import support.*;
  * shed load of redundant calculations.  I can't see any speed up!
  * @version 1.5 Added Induced Delaunay Triangulation drawing routine with
  * parameter hashtable
+ * @version 1.6 Paints immutable GraphSnapshots, so painting never holds the
+ * Graph lock or walks the live Vertex and Edge objects
  */
 public class InputGraphicObserver extends JPanel {
 
     private boolean COLOR = true;
     // Constructor parameters
-    private Graph theGraph;
-    private Graph theDelaunay;
+    private volatile GraphSnapshot theGraph;
+    private volatile GraphSnapshot theDelaunay;
     private Vertex[] thedata = null;
     private Hashtable parameters;
     //  private int iteration = 0;
@@ -93,10 +95,10 @@ public class InputGraphicObserver extends JPanel {
 
     /**
      * Calls to paint() with a graph should be directed through this public method.
-     * @param g Graph
-     * @param delaunay Graph
+     * @param g GraphSnapshot
+     * @param delaunay GraphSnapshot
      */
-    public void trypaint(Graph g, Graph delaunay) {
+    public void trypaint(GraphSnapshot g, GraphSnapshot delaunay) {
       if (g != null) {
         theGraph = g;
       }
@@ -135,95 +137,39 @@ public class InputGraphicObserver extends JPanel {
           displayData(g);
 
           // draw the network graph
+          final GraphSnapshot network = theGraph;
+          final GraphSnapshot delaunay = theDelaunay;
           int vc = 0;
-          int xo = 0;
-          int yo = 0;
-          double[] pos;
-          double[] from;
-          double[] to;
-          int xm, ym, xn, yn;
-          Vertex overtex = null;
-          Vertex vertex;
 
           // Draw the network Induced Delaunay Triangulation if required
-          if ((new Boolean((String)parameters.get("DISPLAY_INDUCED_DELAUNAY_EDGES"))).booleanValue()) {
-
-            for (Iterator i = theDelaunay.getSubGraphs(); i.hasNext(); vc++) {
-              Graph subgraph = (Graph) i.next();
-              g.setColor(delaunay_edges_color);
-
-              Iterator vertexIterator = subgraph.getAllVertices();
-              if (vertexIterator != null) {
-                for ( ; vertexIterator.hasNext(); ) {
-                  vertex = (Vertex)vertexIterator.next();
-                  // Draw the network GNGEdge objects
-                  Iterator edgeIterator = subgraph.getNeighbours(vertex);
-                  if (edgeIterator != null) {
-                    for ( ; edgeIterator.hasNext(); ) {
-                      overtex = (Vertex)edgeIterator.next();
-                      from = vertex.getPosition();
-                      to = overtex.getPosition();
-                      xm = (int)(from[X0] * xscale) + rw2panLR;
-                      ym = (int)(from[X1] * yscale) + rh2panUD;
-                      xn = (int)(to[X0] * xscale) + rw2panLR;
-                      yn = (int)(to[X1] * yscale) + rh2panUD;
-                      g.drawLine(xm, r.height - ym, xn, r.height - yn);
-                    }
-                  }
-                }
-              }
-
-            }
-
+          if ((new Boolean((String)parameters.get("DISPLAY_INDUCED_DELAUNAY_EDGES"))).booleanValue()
+              && delaunay != null) {
+            g.setColor(delaunay_edges_color);
+            displayEdges(g, delaunay);
+            // the network colours follow on from the triangulation subgraphs
+            vc = delaunay.numComponents();
           }
 
-
-
-          for (Iterator i = theGraph.getSubGraphs(); i.hasNext(); vc++) {
-            Graph subgraph = (Graph)i.next();
-            if (COLOR) {
-              g.setColor(color.getColor(vc));
-            } else {
-              g.setColor(nodes);
-            }
-
-            // Draw the network GNGEdges if required
-            if (new Boolean((String)parameters.get("DISPLAY_NETWORK_EDGES")).booleanValue()) {
-
-              Iterator vertexIterator = subgraph.getAllVertices();
-              if (vertexIterator != null) {
-                for ( ; vertexIterator.hasNext(); ) {
-                  vertex = (Vertex)vertexIterator.next();
-                  // Draw the network GNGEdge objects
-                  Iterator edgeIterator = subgraph.getNeighbours(vertex);
-                  if (edgeIterator != null) {
-                    for ( ; edgeIterator.hasNext(); ) {
-                      overtex = (Vertex)edgeIterator.next();
-                      from = vertex.getPosition();
-                      to = overtex.getPosition();
-                      xm = (int)(from[X0] * xscale) + rw2panLR;
-                      ym = (int)(from[X1] * yscale) + rh2panUD;
-                      xn = (int)(to[X0] * xscale) + rw2panLR;
-                      yn = (int)(to[X1] * yscale) + rh2panUD;
-                      g.drawLine(xm, r.height - ym, xn, r.height - yn);
-                    }
-                  }
-                }
+          if (network != null) {
+            final boolean edges =
+                new Boolean((String)parameters.get("DISPLAY_NETWORK_EDGES")).booleanValue();
+            for (int c = 0; c < network.numComponents(); c++, vc++) {
+              if (COLOR) {
+                g.setColor(color.getColor(vc));
+              } else {
+                g.setColor(nodes);
               }
-
-            }
-
-            Iterator vertexIterator = subgraph.getAllVertices();
-              if (vertexIterator != null) {
-                for ( ; vertexIterator.hasNext(); ) {
-                  vertex = (Vertex)vertexIterator.next();
-                  pos = vertex.getPosition();
-                  xo = (int)(pos[X0] * xscale) + rw2panLR;
-                  yo = (int)(pos[X1] * yscale) + rh2panUD;
-                  displayVertex(g, xo, yo, vertex.getSelected());
+              // Draw the network edges if required
+              if (edges) {
+                displayEdges(g, network, c);
+              }
+              for (int i = 0; i < network.numVertices(); i++) {
+                if (network.getComponent(i) == c) {
+                  displayVertex(g, xpos(network, i), ypos(network, i), network.getSelected(i));
                 }
               }
             }
+          }
         } else { // the graph is null, so just display the data and axis
           displayStaticContent(g);
           displayData(g);
@@ -231,6 +177,46 @@ public class InputGraphicObserver extends JPanel {
     }
 
 
+    /**
+     * Helper method to draw every edge of a snapshot
+     * @param g Graphics
+     * @param graph GraphSnapshot
+     */
+    private void displayEdges(Graphics g, GraphSnapshot graph) {
+      displayEdges(g, graph, -1);
+    }
+
+    /**
+     * Helper method to draw the edges of one connected component of a snapshot
+     * @param g Graphics
+     * @param graph GraphSnapshot
+     * @param component int the component, -1 for all of them
+     */
+    private void displayEdges(Graphics g, GraphSnapshot graph, int component) {
+      for (int i = 0; i < graph.numVertices(); i++) {
+        if (component >= 0 && graph.getComponent(i) != component) {
+          continue;
+        }
+        final int xm = xpos(graph, i);
+        final int ym = ypos(graph, i);
+        for (int k = graph.offset(i); k < graph.offset(i + 1); k++) {
+          final int j = graph.target(k);
+          g.drawLine(xm, r.height - ym, xpos(graph, j), r.height - ypos(graph, j));
+        }
+      }
+    }
+
+    // private - no javadoc
+    private int xpos(GraphSnapshot graph, int i) {
+      return (int)(graph.position(i, X0) * xscale) + rw2panLR;
+    }
+
+    // private - no javadoc
+    private int ypos(GraphSnapshot graph, int i) {
+      return (int)(graph.position(i, X1) * yscale) + rh2panUD;
+    }
+
+
     /**
      * Helper method to display a network vertex
      * @param g Graphics
@@ -48,24 +48,26 @@ public class TopologyMeasurePanel {
    */
   private double createTopologyMeasure() {
 
-    Graph network = this.algorithm.getGraph();
+    // work on a fixed copy, so the network may go on training meanwhile
+    GraphSnapshot network = this.algorithm.getGraph().getPublished();
     Matrix nm = new Matrix(network.numVertices(), network.numVertices());
 
     Graph induced = this.algorithm.getInducedDelaunayTriangulation();
-    Matrix im = new Matrix(induced.numVertices(), induced.numVertices());
+    Matrix im = new Matrix(network.numVertices(), network.numVertices());
 
     // create the adjacency matrices
 
-    int ii = 0;
-    Iterator it = network.getAllVertices();
     Vertex [] vit = new Vertex[network.numVertices()];
-    for (Iterator i = network.getAllVertices(); i.hasNext(); ) {
-      vit[ii++] = (Vertex) i.next();
+    for (int ii = 0; ii < vit.length; ii++) {
+      vit[ii] = network.getVertex(ii);
     }
+    // one breadth first search per vertex, shared over the processors
+    final int [][] nd = HopDistances.allPairs(network, true);
+    final int [][] id = HopDistances.allPairs(induced.snapshot(), vit, true);
     for (int vii = 0; vii < vit.length; vii++) {
       for (int vjj = 0; vjj < vit.length; vjj++) {
-        nm.set(vii, vjj, network.distance(vit[vii],vit[vjj]));
-        im.set(vii, vjj, induced.distance(vit[vii],vit[vjj]));
+        nm.set(vii, vjj, nd[vii][vjj]);
+        im.set(vii, vjj, id[vii][vjj]);
       }
     }
     return Tc(nm,im);
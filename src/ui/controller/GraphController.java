@@ -15,6 +15,8 @@ import ui.*;
  * @version 1.1 Error plot update (selgraphics) is no longer called
  *              as a seperate runnable
  * @version 1.2 Removed compiler > 1.5 container unchecked warnings
+ * @version 1.3 Hands the viewer snapshots of the graphs
+ * @version 1.4 Takes the published snapshot of the network
  */
 public class GraphController implements Observer {
 
@@ -54,7 +56,8 @@ public class GraphController implements Observer {
       this.rate = new Integer((String) parameters.get("DISPLAY_UPDATE_RATE")).intValue();
       if ((((Counter)subject).getCounter() % this.rate) == 0) {
 
-        dataView.update( (Graph)algorithm.getGraph(), (Graph)algorithm.getInducedDelaunayTriangulation() );
+        dataView.update( algorithm.getGraph().getPublished().withCurrentPositions(),
+                         algorithm.getInducedDelaunayTriangulation().snapshot() );
         error.add(algorithm.getSSE());
 
       }